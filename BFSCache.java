@@ -0,0 +1,132 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of BFS results keyed by center actor, in front of a BFSEngine
+ * Entries are copies of the engine's primitive parent/depth/parentEdge arrays (no tree graphs), and the oldest
+ * entries are evicted whenever the total size goes over a memory budget
+ * Thread-safe: lookups lock only around the map, misses run on engines from a pool, and the cached results are only
+ * modified by repair (after edges are added to the graph, when nothing else may be reading), so many threads can share
+ * one cache
+ */
+public class BFSCache {
+    private final ScratchPool<BFSEngine> engines;   //run the BFS on a miss (one per concurrent miss)
+    private final long budgetBytes;     //most memory the cached entries may take up
+    private final LinkedHashMap<Integer, BFSResult> entries = new LinkedHashMap<>(16, 0.75f, true);   //access order, eldest first
+    private long bytes;         //memory taken up by the cached entries
+    private long hits, misses, evictions;
+
+    /**
+     * Construct a cache over a graph
+     * @param graph         CSR graph to search
+     * @param budgetBytes   Memory budget for the cached results
+     */
+    public BFSCache(CompactActorGraph graph, long budgetBytes){
+        engines = new ScratchPool<>(() -> new BFSEngine(graph));
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * BFS result from a center actor, from the cache if it's there and from a fresh BFS if not
+     * The result stays valid even after it's evicted
+     * @param source    Dense id of the center actor
+     * @return          BFS result from source
+     */
+    public BFSResult get(int source){
+        synchronized(this){
+            BFSResult result = entries.get(source);
+            if(result != null){
+                hits++;
+                return result;
+            }
+            misses++;
+        }
+        //run the BFS outside the lock so other threads' hits don't wait on it
+        BFSEngine engine = engines.acquire();
+        BFSResult result;
+        try{
+            result = engine.run(source).copy();
+        } finally {
+            engines.release(engine);
+        }
+        synchronized(this){
+            //another thread may have missed on the same source at the same time; keep the first one in
+            BFSResult existing = entries.get(source);
+            if(existing != null) return existing;
+            insert(source, result);
+        }
+        return result;
+    }
+
+    /**
+     * Add a result and evict least recently used entries until back under budget (always keeping the one just added)
+     * @param source    Dense id of the center actor
+     * @param result    BFS result from source
+     */
+    private void insert(int source, BFSResult result){
+        entries.put(source, result);
+        bytes += result.sizeInBytes();
+        Iterator<Map.Entry<Integer, BFSResult>> eldest = entries.entrySet().iterator();
+        while(bytes > budgetBytes && entries.size() > 1){
+            bytes -= eldest.next().getValue().sizeInBytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Bring every cached result up to date after edges were added to the graph, instead of dropping them all
+     * @param newEdges  Added edges as (actor, other actor, edge id) triples
+     * @return          Number of results whose separations changed
+     */
+    public synchronized int repair(IntList newEdges){
+        BFSEngine engine = engines.acquire();
+        int repaired = 0;
+        try{
+            bytes = 0;
+            for(BFSResult result: entries.values()){
+                if(engine.repair(result, newEdges)) repaired++;
+                bytes += result.sizeInBytes();
+            }
+        } finally {
+            engines.release(engine);
+        }
+        return repaired;
+    }
+
+    /**
+     * Drop every cached result (e.g. after the graph changes)
+     */
+    public synchronized void clear(){
+        entries.clear();
+        bytes = 0;
+    }
+
+    //getters for the cache metrics
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getBytes() { return bytes; }
+    public long getBudgetBytes() { return budgetBytes; }
+
+    /**
+     * Fraction of lookups answered from the cache
+     * @return  Hit rate between 0 and 1 (0 before any lookups)
+     */
+    public synchronized double hitRate(){
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * One-line summary of the cache metrics
+     * @return  String with entries, memory, hit rate and evictions
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("BFS cache: %d entries, %.1f/%.1f MB, %d hits / %d misses (%.1f%% hit rate), %d evictions",
+                size(), bytes / 1e6, budgetBytes / 1e6, hits, misses, 100 * hitRate(), evictions);
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable BFS over a CompactActorGraph that fills the parent/depth/parentEdge arrays of one BFSResult
+ * All the arrays are allocated once in the constructor, so running a BFS allocates nothing
+ * Not thread-safe: give each thread its own engine
+ */
+public class BFSEngine {
+    private static final Metrics.Op BFS = Metrics.op("bfs");
+    private final CompactActorGraph graph;  //graph to search
+    private final BFSResult result;         //scratch result that every run overwrites
+
+    /**
+     * Construct an engine (and its scratch arrays) for a graph
+     * @param graph CSR graph to search
+     */
+    public BFSEngine(CompactActorGraph graph){
+        this.graph = graph;
+        result = new BFSResult(graph.numVertices());
+    }
+
+    /**
+     * Run a BFS from a source actor
+     * The returned result is overwritten by the next call, so copy anything that needs to outlive it
+     * @param source    Dense id of the root actor
+     * @return          The engine's result, filled in for this source
+     */
+    public BFSResult run(int source){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        //actors may have been added to the graph since the last run
+        result.grow(graph.numVertices());
+        int[] parent = result.parent;
+        int[] depth = result.depth;
+        int[] parentEdge = result.parentEdge;
+        int[] queue = result.order;    //every actor is enqueued at most once, so the visit order doubles as the queue
+        //only undo the entries the last run touched instead of clearing whole arrays
+        for(int i = 0; i < result.count; i++){
+            int v = queue[i];
+            parent[v] = -1;
+            depth[v] = -1;
+            parentEdge[v] = -1;
+        }
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] edgeIds = graph.edgeIds();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraEdgeIds = graph.extraEdgeIds(), extraNext = graph.extraNext();
+        //add source to queue and mark as visited
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        depth[source] = 0;
+        while(head < tail){
+            int curr = queue[head++];
+            int nextDepth = depth[curr] + 1;
+            //for each unvisited neighbor of the popped actor, enqueue it and point it back at curr
+            for(int slot = offsets[curr]; slot < offsets[curr + 1]; slot++){
+                int neighbor = neighbors[slot];
+                if(depth[neighbor] == -1){
+                    depth[neighbor] = nextDepth;
+                    parent[neighbor] = curr;
+                    parentEdge[neighbor] = edgeIds[slot];
+                    queue[tail++] = neighbor;
+                }
+            }
+            //then the same for any neighbors added since the CSR build
+            for(int link = extraHead[curr]; link != -1; link = extraNext[link]){
+                int neighbor = extraNeighbors[link];
+                if(depth[neighbor] == -1){
+                    depth[neighbor] = nextDepth;
+                    parent[neighbor] = curr;
+                    parentEdge[neighbor] = extraEdgeIds[link];
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        result.source = source;
+        result.count = tail;
+        BFS.record(start, allocated, tail);
+        return result;
+    }
+
+    /**
+     * Bring a BFS result up to date after edges were added to the graph, without searching from scratch
+     * Adding edges can only shorten separations, so only actors that a new edge gets closer to the source (and the
+     * actors behind them) change: those are relaxed level by level from the new edges outwards, and everything else
+     * is left alone
+     * @param result    Standalone result (a copy, not this engine's scratch) from before the edges were added
+     * @param newEdges  Added edges as (actor, other actor, edge id) triples
+     * @return          true if any separation changed
+     */
+    public boolean repair(BFSResult result, IntList newEdges){
+        int n = graph.numVertices();
+        result.grow(n);
+        //buckets.get(d) holds actors whose separation dropped to d (stale entries are skipped when popped)
+        List<IntList> buckets = new ArrayList<>();
+        boolean changed = false;
+        for(int i = 0; i < newEdges.size(); i += 3){
+            int a = newEdges.get(i), b = newEdges.get(i + 1), e = newEdges.get(i + 2);
+            changed |= relax(result, a, b, e, buckets);
+            changed |= relax(result, b, a, e, buckets);
+        }
+        if(!changed) return false;
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] edgeIds = graph.edgeIds();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraEdgeIds = graph.extraEdgeIds(), extraNext = graph.extraNext();
+        //relaxing from depth d only ever adds to bucket d+1, so sweeping the buckets in order settles everything
+        for(int d = 0; d < buckets.size(); d++){
+            IntList bucket = buckets.get(d);
+            for(int i = 0; i < bucket.size(); i++){
+                int v = bucket.get(i);
+                if(result.depth[v] != d) continue;
+                for(int slot = offsets[v]; slot < offsets[v + 1]; slot++) relax(result, v, neighbors[slot], edgeIds[slot], buckets);
+                for(int link = extraHead[v]; link != -1; link = extraNext[link]) relax(result, v, extraNeighbors[link], extraEdgeIds[link], buckets);
+            }
+        }
+        //the visit order has to stay sorted by depth, so rebuild it with a counting sort
+        int[] depth = result.depth;
+        int count = 0, maxDepth = 0;
+        for(int v = 0; v < n; v++){
+            if(depth[v] == -1) continue;
+            count++;
+            maxDepth = Math.max(maxDepth, depth[v]);
+        }
+        int[] levelStart = new int[maxDepth + 2];
+        for(int v = 0; v < n; v++){
+            if(depth[v] != -1) levelStart[depth[v] + 1]++;
+        }
+        for(int d = 0; d <= maxDepth; d++) levelStart[d + 1] += levelStart[d];
+        int[] order = new int[count];
+        for(int v = 0; v < n; v++){
+            if(depth[v] != -1) order[levelStart[depth[v]]++] = v;
+        }
+        result.order = order;
+        result.count = count;
+        return true;
+    }
+
+    /**
+     * Shorten an actor's separation through a neighbor if that's a shortcut
+     * @param result    Result being repaired
+     * @param from      Actor already settled
+     * @param to        Its neighbor
+     * @param edge      Edge id between them
+     * @param buckets   Actors whose separation dropped, by new separation
+     * @return          true if to got closer to the source
+     */
+    private static boolean relax(BFSResult result, int from, int to, int edge, List<IntList> buckets){
+        if(result.depth[from] == -1) return false;
+        int d = result.depth[from] + 1;
+        if(result.depth[to] != -1 && result.depth[to] <= d) return false;
+        result.depth[to] = d;
+        result.parent[to] = from;
+        result.parentEdge[to] = edge;
+        while(buckets.size() <= d) buckets.add(new IntList());
+        buckets.get(d).add(to);
+        return true;
+    }
+
+    public CompactActorGraph getGraph() { return graph; }
+}
@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Result of one BFS over a CompactActorGraph, held in primitive arrays indexed by dense actor id
+ * Takes the place of the BFS tree Graph: following parent[] from any actor walks the same path back to the source
+ */
+public class BFSResult {
+    int source;         //dense id of the root of the search
+    int count;          //number of actors reached (including the source)
+    int[] parent;       //actor -> the actor one step closer to the source, or -1 (source or not reached)
+    int[] depth;        //actor -> separation from the source, or -1 if not reached
+    int[] parentEdge;   //actor -> undirected edge id to its parent (for the shared movies), or -1
+    int[] order;        //actors in the order they were reached, so order[0] is the source and depths never decrease
+
+    /**
+     * Construct an empty result with room for every actor in the graph (nothing reached yet)
+     * @param numVertices   Number of actors in the graph
+     */
+    public BFSResult(int numVertices){
+        parent = new int[numVertices];
+        depth = new int[numVertices];
+        parentEdge = new int[numVertices];
+        order = new int[numVertices];
+        Arrays.fill(parent, -1);
+        Arrays.fill(depth, -1);
+        Arrays.fill(parentEdge, -1);
+        source = -1;
+    }
+
+    /**
+     * Construct a standalone copy of another result, with the visit order trimmed to the actors actually reached
+     * @param other Result to copy (usually an engine's scratch result)
+     */
+    private BFSResult(BFSResult other){
+        source = other.source;
+        count = other.count;
+        parent = other.parent.clone();
+        depth = other.depth.clone();
+        parentEdge = other.parentEdge.clone();
+        order = Arrays.copyOf(other.order, other.count);
+    }
+
+    /**
+     * Make room for actors added to the graph since this result was made (none of them reached yet)
+     * @param numVertices   Number of actors in the graph now
+     */
+    void grow(int numVertices){
+        int old = depth.length;
+        if(numVertices <= old) return;
+        parent = Arrays.copyOf(parent, numVertices);
+        depth = Arrays.copyOf(depth, numVertices);
+        parentEdge = Arrays.copyOf(parentEdge, numVertices);
+        Arrays.fill(parent, old, numVertices, -1);
+        Arrays.fill(depth, old, numVertices, -1);
+        Arrays.fill(parentEdge, old, numVertices, -1);
+        //an engine's scratch result uses the order as its queue, so it needs room for everyone
+        if(order.length == old) order = Arrays.copyOf(order, numVertices);
+    }
+
+    /**
+     * Copy this result so it outlives the next run of the engine that filled it in
+     * (the copy can be read like any result, but can't be handed back to an engine to run into)
+     * @return  Standalone copy
+     */
+    public BFSResult copy(){
+        return new BFSResult(this);
+    }
+
+    /**
+     * Rough heap footprint of this result, for memory budgets
+     * @return  Bytes used by the arrays
+     */
+    public long sizeInBytes(){
+        return 4L * (parent.length + depth.length + parentEdge.length + order.length) + 64;
+    }
+
+    //standard getters (the arrays are shared, so don't modify them)
+    public int getSource() { return source; }
+    public int getCount() { return count; }
+    public int[] getParent() { return parent; }
+    public int[] getDepth() { return depth; }
+    public int[] getParentEdge() { return parentEdge; }
+    public int[] getOrder() { return order; }
+
+    /**
+     * Whether an actor is connected to the source
+     * @param v Dense actor id
+     * @return  true if the BFS reached v
+     */
+    public boolean isReached(int v){
+        return depth[v] != -1;
+    }
+}
@@ -0,0 +1,411 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Batch mode: answers a whole file of separation and path queries at once instead of one typed command at a time
+ * Queries are sorted by source actor so every source's BFS is run once and shared by all of its targets, and the
+ * sources are spread across a ForkJoinPool. Sources with only a few targets use a bidirectional search per target
+ * instead, since that touches far less of the graph than a whole BFS tree
+ * Each source's results are written to the output as soon as they're ready, so rows come out grouped by source
+ * rather than in file order; every row carries the line number of its query to match it back up
+ * When the casts are too big to expand into co-star pairs (see KevinBacon.loadForSearch), every source is searched
+ * over the bipartite actor-movie index instead, and the movies on each path are worked out as the rows are written
+ *
+ * Query file: one query per line, in the same | separated style as the delta files, with blank lines and # comments
+ * skipped
+ *  S|from|to   separation between two actors
+ *  P|from|to   separation and a shortest path, with the movies shared at each step
+ * Output: CSV (line,kind,from,to,separation,path,movies,error) or JSON Lines (one object per query with the same
+ * fields), picked by the output file's extension; separation is -1 when the actors aren't connected
+ *
+ * Usage: java BaconBatch queries.txt results.csv|results.jsonl [threads]
+ */
+public class BaconBatch {
+    private static final Metrics.Op GROUP = Metrics.op("batch source");
+    private static final int GRAIN = 4;         //sources per leaf task
+    private static final int BFS_TARGETS = 4;   //targets a source needs before one BFS beats a bidirectional search each
+
+    private final CompactActorGraph graph;      //graph to answer from (read-only while a batch runs)
+    private final BipartiteIndex index;         //index to search instead of the graph's edges, or null
+
+    /**
+     * Queries read from a file, in parallel primitive arrays (unknown names are kept as errors, not dropped)
+     */
+    public static class Queries {
+        private final IntList lines = new IntList();    //line number of each query in the file
+        private final IntList from = new IntList();     //dense id of each query's source actor
+        private final IntList to = new IntList();       //dense id of each query's target actor
+        private final BitSet paths = new BitSet();      //queries that want the path and not just the separation
+        private final List<String[]> errors = new ArrayList<>();   //line, kind, from, to and message of queries that can't be answered
+
+        /**
+         * Add a query that can be answered
+         * @param line  Line number in the file
+         * @param from  Dense id of the source actor
+         * @param to    Dense id of the target actor
+         * @param path  Whether the path is wanted too
+         */
+        public void add(int line, int from, int to, boolean path){
+            if(path) paths.set(this.from.size());
+            lines.add(line);
+            this.from.add(from);
+            this.to.add(to);
+        }
+
+        public int size() { return from.size(); }
+        public int numErrors() { return errors.size(); }
+    }
+
+    /**
+     * Numbers from one batch run
+     */
+    public static class Stats {
+        private final int queries, sources, errors;     //answered queries, distinct sources among them, and error rows
+        private final long nanos;
+
+        Stats(int queries, int sources, int errors, long nanos){
+            this.queries = queries;
+            this.sources = sources;
+            this.errors = errors;
+            this.nanos = nanos;
+        }
+
+        public double queriesPerSecond() { return queries / (nanos / 1e9); }
+
+        @Override
+        public String toString() {
+            //errors are listed on their own so they don't inflate the rate
+            return String.format("%d queries (%d sources) in %.1f ms: %.0f queries/s; %d errors not answered", queries, sources, nanos / 1e6, queriesPerSecond(), errors);
+        }
+    }
+
+    /**
+     * Output format of the results
+     */
+    public enum Format {
+        CSV, JSONL;
+
+        /**
+         * Format for an output file, by its extension
+         * @param path  Output file
+         * @return      JSONL for .jsonl and .json, CSV for anything else
+         */
+        static Format of(String path){
+            String lower = path.toLowerCase(Locale.ROOT);
+            return lower.endsWith(".jsonl") || lower.endsWith(".json") ? JSONL : CSV;
+        }
+    }
+
+    /**
+     * Construct a batch runner for a graph
+     * @param graph CSR graph to answer from
+     */
+    public BaconBatch(CompactActorGraph graph){
+        this(graph, null);
+    }
+
+    /**
+     * Construct a batch runner that searches a bipartite index
+     * @param graph CSR graph with the names (its edges aren't used when there's an index)
+     * @param index Index built from the same credits, or null to search the graph's edges
+     */
+    public BaconBatch(CompactActorGraph graph, BipartiteIndex index){
+        this.graph = graph;
+        this.index = index;
+    }
+
+    /**
+     * Read a query file, looking up every name
+     * @param path  Query file
+     * @return      The queries, with the ones that can't be answered kept as errors
+     */
+    public Queries read(String path) throws IOException {
+        Queries queries = new Queries();
+        try(BufferedReader in = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)){
+            String line;
+            int lineNumber = 0;
+            while((line = in.readLine()) != null){
+                lineNumber++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) continue;
+                String[] fields = line.split("\\|");
+                String kind = fields[0].trim().toUpperCase(Locale.ROOT);
+                if(fields.length != 3 || !(kind.equals("S") || kind.equals("P"))){
+                    queries.errors.add(new String[]{Integer.toString(lineNumber), kind, "", "", "expected S|from|to or P|from|to"});
+                    continue;
+                }
+                String fromName = fields[1].trim(), toName = fields[2].trim();
+                int from = graph.indexOf(fromName), to = graph.indexOf(toName);
+                if(from == -1 || to == -1){
+                    queries.errors.add(new String[]{Integer.toString(lineNumber), kind, fromName, toName, "unknown actor " + (from == -1 ? fromName : toName)});
+                    continue;
+                }
+                queries.add(lineNumber, from, to, kind.equals("P"));
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Answer every query, writing the results as they come
+     * @param queries       Queries to answer
+     * @param out           Where to write the results (written under a lock, so one writer serves every thread)
+     * @param format        Output format
+     * @param parallelism   Number of worker threads
+     * @return              Counts and timing of the run
+     */
+    public Stats run(Queries queries, Writer out, Format format, int parallelism) throws IOException {
+        long start = System.nanoTime();
+        int n = queries.size();
+        if(format == Format.CSV) out.write("line,kind,from,to,separation,path,movies,error\n");
+        for(String[] error: queries.errors){
+            StringBuilder row = new StringBuilder();
+            appendRow(row, format, error[0], error[1], error[2], error[3], null, null, null, error[4]);
+            out.write(row.toString());
+        }
+        //sort the queries by source (query number in the low bits keeps each source's targets in file order)
+        long[] order = new long[n];
+        int[] from = queries.from.array();
+        for(int q = 0; q < n; q++) order[q] = ((long) from[q] << 32) | q;
+        Arrays.parallelSort(order);
+        //groupStart[g] ... groupStart[g+1]-1 are the positions in order of source g's queries
+        IntList groupStart = new IntList();
+        for(int i = 0; i < n; i++){
+            if(i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32)) groupStart.add(i);
+        }
+        int groups = groupStart.size();
+        groupStart.add(n);
+        ThreadLocal<BFSEngine> engines = ThreadLocal.withInitial(() -> new BFSEngine(graph));
+        ThreadLocal<PathQuery> pathQueries = ThreadLocal.withInitial(() -> new PathQuery(graph));
+        ThreadLocal<BipartiteBFS> bipartiteEngines = index == null ? null : ThreadLocal.withInitial(() -> new BipartiteBFS(index));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new GroupTask(queries, order, groupStart.array(), 0, groups, engines, pathQueries, bipartiteEngines, out, format));
+        } catch (UncheckedIOException e){
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        out.flush();
+        return new Stats(n, groups, queries.numErrors(), System.nanoTime() - start);
+    }
+
+    /**
+     * Fork/join task over a range of sources that splits in half until the range is GRAIN or smaller
+     */
+    @SuppressWarnings("serial")
+    private class GroupTask extends RecursiveAction {
+        private final Queries queries;
+        private final long[] order;         //source << 32 | query number, sorted
+        private final int[] groupStart;     //source group -> its first position in order
+        private final int lo, hi;           //groups lo ... hi-1
+        private final ThreadLocal<BFSEngine> engines;
+        private final ThreadLocal<PathQuery> pathQueries;
+        private final ThreadLocal<BipartiteBFS> bipartiteEngines;  //null unless searching an index
+        private final Writer out;
+        private final Format format;
+
+        GroupTask(Queries queries, long[] order, int[] groupStart, int lo, int hi, ThreadLocal<BFSEngine> engines,
+                  ThreadLocal<PathQuery> pathQueries, ThreadLocal<BipartiteBFS> bipartiteEngines, Writer out, Format format){
+            this.queries = queries;
+            this.order = order;
+            this.groupStart = groupStart;
+            this.lo = lo;
+            this.hi = hi;
+            this.engines = engines;
+            this.pathQueries = pathQueries;
+            this.bipartiteEngines = bipartiteEngines;
+            this.out = out;
+            this.format = format;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > GRAIN){
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new GroupTask(queries, order, groupStart, lo, mid, engines, pathQueries, bipartiteEngines, out, format),
+                        new GroupTask(queries, order, groupStart, mid, hi, engines, pathQueries, bipartiteEngines, out, format));
+                return;
+            }
+            StringBuilder rows = new StringBuilder();
+            for(int g = lo; g < hi; g++){
+                rows.setLength(0);
+                answer(groupStart[g], groupStart[g + 1], rows);
+                //stream each source's rows out as soon as they're done
+                try{
+                    synchronized(out){
+                        out.append(rows);
+                    }
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        /**
+         * Answer every query of one source
+         * @param first First position in order of the source's queries
+         * @param end   Position just past its last one
+         * @param rows  Where to put the result rows
+         */
+        private void answer(int first, int end, StringBuilder rows){
+            long start = Metrics.start(), allocated = Metrics.allocated();
+            int source = (int) (order[first] >>> 32);
+            //over an index there are no edges for a bidirectional search to use, so every source gets a BFS
+            BipartiteBFS bipartite = bipartiteEngines == null ? null : bipartiteEngines.get();
+            BFSResult result;
+            if(bipartite != null) result = bipartite.run(source);
+            else result = end - first >= BFS_TARGETS ? engines.get().run(source) : null;
+            int visited = 0;
+            for(int i = first; i < end; i++){
+                int q = (int) order[i];
+                int target = queries.to.get(q);
+                boolean wantPath = queries.paths.get(q);
+                List<String> actors = null;
+                List<Set<String>> movies = null;
+                int separation;
+                if(result != null){
+                    separation = result.depth[target];
+                    if(wantPath && separation != -1){
+                        //walk back up the tree from the target, then turn it around so it runs from the source
+                        actors = new ArrayList<>(separation + 1);
+                        movies = new ArrayList<>(separation);
+                        for(int v = target; v != source; v = result.parent[v]){
+                            actors.add(graph.nameOf(v));
+                            movies.add(bipartite != null ? bipartite.label(graph, result, v) : graph.movieLabel(result.parentEdge[v]));
+                        }
+                        actors.add(graph.nameOf(source));
+                        Collections.reverse(actors);
+                        Collections.reverse(movies);
+                    }
+                } else {
+                    PathQuery query = pathQueries.get();
+                    PathQuery.Path path = query.find(source, target);
+                    visited += query.getVisited();
+                    separation = path == null ? -1 : path.separation();
+                    if(wantPath && path != null){
+                        actors = path.getActors();
+                        movies = path.getMovies();
+                    }
+                }
+                appendRow(rows, format, Integer.toString(queries.lines.get(q)), wantPath ? "P" : "S", graph.nameOf(source), graph.nameOf(target),
+                        Integer.toString(separation), actors, movies, null);
+            }
+            GROUP.record(start, allocated, result != null ? result.count : visited);
+        }
+    }
+
+    /**
+     * Add one result row
+     * @param row           Where to put it
+     * @param format        Output format
+     * @param line          Line number of the query
+     * @param kind          S or P
+     * @param from          Source actor as written
+     * @param to            Target actor as written
+     * @param separation    Separation, or null if there's an error
+     * @param actors        Actors on the path from source to target, or null if no path was asked for or found
+     * @param movies        Movies shared at each step of the path
+     * @param error         Why the query couldn't be answered, or null
+     */
+    private static void appendRow(StringBuilder row, Format format, String line, String kind, String from, String to, String separation,
+                                  List<String> actors, List<Set<String>> movies, String error){
+        if(format == Format.CSV){
+            row.append(line).append(',').append(kind).append(',');
+            csv(row, from).append(',');
+            csv(row, to).append(',');
+            if(separation != null) row.append(separation);
+            row.append(',');
+            if(actors != null){
+                csv(row, String.join(" > ", actors)).append(',');
+                StringJoiner steps = new StringJoiner(" > ");
+                for(Set<String> step: movies) steps.add(String.join("; ", step));
+                csv(row, steps.toString());
+            } else {
+                row.append(',');
+            }
+            row.append(',');
+            if(error != null) csv(row, error);
+            row.append('\n');
+            return;
+        }
+        row.append("{\"line\":").append(line).append(",\"kind\":");
+        json(row, kind).append(",\"from\":");
+        json(row, from).append(",\"to\":");
+        json(row, to);
+        if(separation != null) row.append(",\"separation\":").append(separation);
+        if(actors != null){
+            row.append(",\"path\":[");
+            for(int i = 0; i < actors.size(); i++){
+                if(i > 0) row.append(',');
+                json(row, actors.get(i));
+            }
+            row.append("],\"movies\":[");
+            for(int i = 0; i < movies.size(); i++){
+                if(i > 0) row.append(',');
+                row.append('[');
+                int j = 0;
+                for(String movie: movies.get(i)){
+                    if(j++ > 0) row.append(',');
+                    json(row, movie);
+                }
+                row.append(']');
+            }
+            row.append(']');
+        }
+        if(error != null){
+            row.append(",\"error\":");
+            json(row, error);
+        }
+        row.append("}\n");
+    }
+
+    /**
+     * Add a CSV field, quoted if it has to be
+     * @param row   Where to put it
+     * @param field Field value
+     * @return      row
+     */
+    private static StringBuilder csv(StringBuilder row, String field){
+        if(field.indexOf(',') == -1 && field.indexOf('"') == -1 && field.indexOf('\n') == -1 && field.indexOf('\r') == -1) return row.append(field);
+        return row.append('"').append(field.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Add a JSON string, escaped
+     * @param row   Where to put it
+     * @param s     String value
+     * @return      row
+     */
+    private static StringBuilder json(StringBuilder row, String s){
+        row.append('"');
+        for(int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if(c == '"' || c == '\\') row.append('\\').append(c);
+            else if(c < 0x20) row.append(String.format("\\u%04x", (int) c));
+            else row.append(c);
+        }
+        return row.append('"');
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: java BaconBatch <query file> <output .csv or .jsonl> [threads]");
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        KevinBacon kb = new KevinBacon();
+        kb.loadForSearch(KevinBacon.inputChecksum());
+        BaconBatch batch = new BaconBatch(kb.getCompactGraph(), kb.getBipartiteIndex());
+        Queries queries = batch.read(args[0]);
+        try(Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)){
+            Stats stats = batch.run(queries, out, Format.of(args[1]), threads);
+            System.out.println("On " + threads + (threads == 1 ? " thread" : " threads") + ", answered " + stats);
+        }
+    }
+}
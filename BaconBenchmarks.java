@@ -0,0 +1,220 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark suite over the main hot paths, to run before and after a change to see whether it helps or hurts
+ * Reports time per operation, throughput and bytes allocated per operation for every stage, and the retained heap of
+ * each graph representation:
+ *  - the load stages (KevinBacon's maps and createGraph, BaconLoader and the CSR build, or the synthetic generator)
+ *  - bfs from a high-degree and a low-degree center, getPath, averageSeparation, getSeparations, missingVertices and
+ *    betweennessCentrality, on the original Graph and on the CSR graph
+ *  - bfs over the bipartite actor-movie index and on-demand shared-movie labels, with the index's extra heap
+ *  - the separation histogram by one BFS per source against the bit-parallel multi-source BFS
+ *  - top-10 selection with a bounded heap against a full sort of the betweenness scores
+ *  - batch separation queries grouped by source, on one thread and on every core
+ *  - building the landmark distance oracle, and its bounds and exact separations next to the bidirectional search
+ * Runs on the bacon/ files by default, or on synthetic data of any size with "synthetic <actors>" (the original Graph
+ * stages are skipped past SYNTHETIC_GRAPH_LIMIT actors since they'd take too long)
+ * Uses the plain Bench harness rather than JMH, since the project has no build file to hang the JMH annotation
+ * processor off and its classes live in the default package, which JMH benchmarks can't import
+ */
+public class BaconBenchmarks {
+    private static final int SYNTHETIC_GRAPH_LIMIT = 50000;     //biggest synthetic graph the original Graph stages run on
+    private static final int WARMUPS = 3, RUNS = 10;            //runs per measurement
+    private static final int PATHS = 1000;                      //random actors per getPath run
+
+    public static void main(String[] args){
+        boolean synthetic = args.length > 0 && args[0].equals("synthetic");
+        int numActors = synthetic && args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Graph<String, Set<String>> mainGraph = null;
+        CompactActorGraph graph;
+        System.out.println("== load ==");
+        if(synthetic){
+            SyntheticCredits generator = SyntheticCredits.scaledTo(numActors, 1);
+            Bench.measure("SyntheticCredits.generate", 1, 3, () -> generator.generate(new SyntheticCredits.Sink() {
+                @Override
+                public void actor(int id, String name) { }
+                @Override
+                public void movie(int id, String name) { }
+                @Override
+                public void credit(int movie, int actor) { }
+            }));
+            graph = Bench.footprint("CSR graph", generator::toGraph);
+            Bench.measure("SyntheticCredits.toGraph", 1, 3, generator::toGraph);
+        } else {
+            //footprints first, while there's no garbage from other runs around to confuse them
+            graph = Bench.footprint("CSR graph", () -> loadFiles().buildGraph());
+            mainGraph = Bench.footprint("Graph (AdjacencyMapGraph)", () -> {
+                KevinBacon kb = new KevinBacon();
+                kb.createGraph();
+                return kb.getMainGraph();
+            });
+            Bench.measure("KevinBacon.setActorMap", WARMUPS, RUNS, () -> new KevinBacon().setActorMap());
+            Bench.measure("KevinBacon.setMovieMap", WARMUPS, RUNS, () -> new KevinBacon().setMovieMap());
+            //later stages run on maps read in once by the earlier ones
+            KevinBacon maps = new KevinBacon();
+            maps.setActorMap();
+            maps.setMovieMap();
+            Bench.measure("KevinBacon.setActorsInMovieMap", WARMUPS, RUNS, maps::setActorsInMovieMap);
+            Bench.measure("KevinBacon.createGraph (all stages)", WARMUPS, RUNS, () -> new KevinBacon().createGraph());
+            Bench.measure("BaconLoader.load", WARMUPS, RUNS, BaconBenchmarks::loadFiles);
+            BaconLoader loaded = loadFiles();
+            Bench.measure("BaconLoader.buildGraph", WARMUPS, RUNS, loaded::buildGraph);
+        }
+        if(mainGraph == null && graph.numVertices() <= SYNTHETIC_GRAPH_LIMIT) mainGraph = toGraph(graph);
+        System.out.println(graph);
+        //centers at both ends of the degree distribution (the lowest degree that still has somebody to search)
+        int high = 0, low = -1;
+        for(int v = 0; v < graph.numVertices(); v++){
+            if(graph.degree(v) > graph.degree(high)) high = v;
+            if(graph.degree(v) > 0 && (low == -1 || graph.degree(v) < graph.degree(low))) low = v;
+        }
+        int[] targets = new int[PATHS];
+        Random random = new Random(1);
+        for(int i = 0; i < PATHS; i++) targets[i] = random.nextInt(graph.numVertices());
+        if(mainGraph != null) benchGraph(mainGraph, graph, high, low, targets);
+        benchCompact(graph, high, low, targets);
+    }
+
+    /**
+     * Benchmark the original GraphLibBacon methods on an AdjacencyMapGraph
+     * @param mainGraph Graph to benchmark
+     * @param graph     The same graph in CSR form (for the actor names)
+     * @param high      Dense id of a high-degree center
+     * @param low       Dense id of a low-degree center
+     * @param targets   Dense ids of actors to find paths for
+     */
+    private static void benchGraph(Graph<String, Set<String>> mainGraph, CompactActorGraph graph, int high, int low, int[] targets){
+        System.out.println("== Graph ==");
+        String highName = graph.nameOf(high), lowName = graph.nameOf(low);
+        Bench.measure("bfs, high-degree center", WARMUPS, RUNS, () -> GraphLibBacon.bfs(mainGraph, highName));
+        Bench.measure("bfs, low-degree center", WARMUPS, RUNS, () -> GraphLibBacon.bfs(mainGraph, lowName));
+        Graph<String, Set<String>> tree = GraphLibBacon.bfs(mainGraph, highName);
+        Bench.measure("getPath x" + targets.length, WARMUPS, RUNS, () -> {
+            for(int v: targets){
+                if(tree.hasVertex(graph.nameOf(v))) GraphLibBacon.getPath(tree, graph.nameOf(v));
+            }
+        });
+        Bench.measure("averageSeparation", WARMUPS, RUNS, () -> GraphLibBacon.averageSeparation(tree, highName));
+        Bench.measure("getSeparations", WARMUPS, RUNS, () -> GraphLibBacon.getSeparations(tree, highName));
+        Bench.measure("missingVertices", 1, 3, () -> GraphLibBacon.missingVertices(mainGraph, tree));
+        Bench.measure("betweennessCentrality (one actor)", 1, 3, () -> GraphLibBacon.betweennessCentrality(tree, lowName));
+    }
+
+    /**
+     * Benchmark the same operations on the CSR graph
+     * @param graph     CSR graph to benchmark
+     * @param high      Dense id of a high-degree center
+     * @param low       Dense id of a low-degree center
+     * @param targets   Dense ids of actors to find paths for
+     */
+    private static void benchCompact(CompactActorGraph graph, int high, int low, int[] targets){
+        System.out.println("== CompactActorGraph ==");
+        BFSEngine engine = new BFSEngine(graph);
+        Bench.measure("bfs, high-degree center", WARMUPS, RUNS, () -> engine.run(high));
+        Bench.measure("bfs, low-degree center", WARMUPS, RUNS, () -> engine.run(low));
+        BFSResult result = engine.run(high).copy();
+        Bench.measure("getPath x" + targets.length, WARMUPS, RUNS, () -> {
+            for(int v: targets){
+                if(result.isReached(v)) GraphLibBacon.getPath(graph, result, graph.nameOf(v));
+            }
+        });
+        PathQuery query = new PathQuery(graph);
+        Bench.measure("bidirectional path x" + targets.length, WARMUPS, RUNS, () -> {
+            for(int i = 1; i < targets.length; i++) query.find(targets[i - 1], targets[i]);
+        });
+        Bench.measure("averageSeparation", WARMUPS, RUNS, () -> GraphLibBacon.averageSeparation(result));
+        Bench.measure("getSeparations", WARMUPS, RUNS, () -> GraphLibBacon.getSeparations(graph, result));
+        Bench.measure("ConnectedComponents", WARMUPS, RUNS, () -> new ConnectedComponents(graph));
+        ConnectedComponents components = new ConnectedComponents(graph);
+        Bench.measure("missingVertices (BFS result)", WARMUPS, RUNS, () -> GraphLibBacon.missingVertices(graph, result));
+        Bench.measure("missingVertices (components)", WARMUPS, RUNS, () -> GraphLibBacon.missingVertices(graph, components, high));
+        Bench.measure("betweennessCentrality (one actor)", WARMUPS, RUNS, () -> GraphLibBacon.betweennessCentrality(result, low));
+        BetweennessCentrality betweenness = new BetweennessCentrality(graph);
+        Bench.measure("Brandes, 100 sampled sources", 1, 3, () -> betweenness.compute(100, 1, null));
+        int cores = Runtime.getRuntime().availableProcessors();
+        //separation histogram from 256 sources: one BFS each against 64 at a time in one bit-parallel search
+        int histogramSources = Math.min(256, graph.numVertices());
+        Bench.measure("histogram, BFS per source x" + histogramSources, 1, 3, () -> {
+            long[] histogram = new long[256];
+            for(int s = 0; s < histogramSources; s++){
+                BFSResult r = engine.run(s);
+                for(int i = 1; i < r.getCount(); i++) histogram[Math.min(255, r.getDepth()[r.getOrder()[i]])]++;
+            }
+        });
+        for(int threads: cores == 1 ? new int[]{1} : new int[]{1, cores}){
+            SeparationHistogram separations = new SeparationHistogram(graph, threads);
+            Bench.measure("histogram, multi-source BFS x" + histogramSources + ", " + threads + " threads", 1, 3, () -> separations.compute(histogramSources, 1, null));
+        }
+        //selecting the top 10 with a bounded heap against sorting every score
+        double[] scores = betweenness.getCentrality();
+        Bench.measure("TopK 10 of " + scores.length, WARMUPS, RUNS, () -> TopK.select(scores, 10, true));
+        Bench.measure("full sort of " + scores.length, WARMUPS, RUNS, () -> Arrays.sort(scores.clone()));
+        //the index shares the graph's casts, so this is just the filmographies on top
+        BipartiteIndex bipartite = Bench.footprint("BipartiteIndex (filmographies)", () -> BipartiteIndex.of(graph));
+        BipartiteBFS bipartiteBfs = new BipartiteBFS(bipartite);
+        Bench.measure("bipartite bfs, high-degree center", WARMUPS, RUNS, () -> bipartiteBfs.run(high));
+        Bench.measure("bipartite bfs, low-degree center", WARMUPS, RUNS, () -> bipartiteBfs.run(low));
+        Bench.measure("sharedMovies x" + targets.length, WARMUPS, RUNS, () -> {
+            for(int v: targets){
+                if(result.isReached(v) && v != high) bipartite.sharedMovies(v, result.getParent()[v]);
+            }
+        });
+        //every target against a handful of sources, so some sources share a BFS and the rest run bidirectional searches
+        BaconBatch batch = new BaconBatch(graph);
+        BaconBatch.Queries queries = new BaconBatch.Queries();
+        for(int i = 0; i < targets.length; i++) queries.add(i + 1, i % 2 == 0 ? targets[i % 8] : targets[(i + 1) % targets.length], targets[i], false);
+        for(int threads: cores == 1 ? new int[]{1} : new int[]{1, cores}){
+            Bench.measure("batch x" + queries.size() + ", " + threads + " threads", 1, 3, () -> {
+                try{
+                    batch.run(queries, Writer.nullWriter(), BaconBatch.Format.CSV, threads);
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        Bench.measure("LandmarkOracle, 16 landmarks", 1, 3, () -> LandmarkOracle.compute(graph, 16, 0, cores));
+        LandmarkOracle oracle = LandmarkOracle.compute(graph, 16, 0, cores);
+        Bench.measure("landmark bounds x" + targets.length, WARMUPS, RUNS, () -> {
+            for(int i = 1; i < targets.length; i++) oracle.upperBound(targets[i - 1], targets[i]);
+        });
+        Bench.measure("landmark distance x" + targets.length, WARMUPS, RUNS, () -> {
+            for(int i = 1; i < targets.length; i++) oracle.distance(targets[i - 1], targets[i]);
+        });
+    }
+
+    /**
+     * Load the bacon/ files with the streaming loader
+     * @return  Loader holding the credits
+     */
+    private static BaconLoader loadFiles(){
+        try{
+            BaconLoader loader = new BaconLoader();
+            loader.load(KevinBacon.ACTORS_FILE, KevinBacon.MOVIES_FILE, KevinBacon.MOVIE_ACTORS_FILE);
+            return loader;
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Copy a CSR graph into an AdjacencyMapGraph, so the original methods can run on synthetic data
+     * @param graph CSR graph
+     * @return      The same vertices, edges and labels as a Graph
+     */
+    private static Graph<String, Set<String>> toGraph(CompactActorGraph graph){
+        Graph<String, Set<String>> mainGraph = new AdjacencyMapGraph<>();
+        for(String v: graph.vertices()) mainGraph.insertVertex(v);
+        int[] offsets = graph.offsets(), neighbors = graph.neighbors(), edgeIds = graph.edgeIds();
+        for(int u = 0; u < graph.numVertices(); u++){
+            for(int slot = offsets[u]; slot < offsets[u + 1]; slot++){
+                if(u < neighbors[slot]) mainGraph.insertUndirected(graph.nameOf(u), graph.nameOf(neighbors[slot]), graph.movieLabel(edgeIds[slot]));
+            }
+        }
+        return mainGraph;
+    }
+}
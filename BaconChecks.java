@@ -0,0 +1,169 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Correctness checks for the fast paths that have a slow, obviously right counterpart, to run next to BaconBenchmarks
+ * after a change:
+ *  - TopK selection against a stable sort, on random scores with many ties, and the betweenness ranks against top()
+ *  - the landmark oracle's bounds and exact separations against BFSEngine depths, before and after a save and load
+ *  - the multi-source separation histogram and eccentricities against one BFS per source, on one thread and on every
+ *    core
+ * Runs on the bacon/ files by default, or on synthetic data of any size with "synthetic <actors>"
+ * Prints one line per check and exits with status 1 if any of them found a mismatch
+ */
+public class BaconChecks {
+    private static final int SOURCES = 60;      //random sources per BFS comparison
+    private static final int STRIDE = 7;        //compare every STRIDE-th actor from each source
+    private static final int TOPK_TRIALS = 2000; //random arrays per TopK comparison
+    private static final int HISTOGRAM_SOURCES = 200;   //sampled sources per histogram comparison (not a multiple of 64)
+
+    private static int failures = 0;            //checks that found a mismatch
+
+    public static void main(String[] args){
+        boolean synthetic = args.length > 0 && args[0].equals("synthetic");
+        int numActors = synthetic && args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        CompactActorGraph graph;
+        if(synthetic) graph = SyntheticCredits.scaledTo(numActors, 1).toGraph();
+        else {
+            try{
+                BaconLoader loader = new BaconLoader();
+                loader.load(KevinBacon.ACTORS_FILE, KevinBacon.MOVIES_FILE, KevinBacon.MOVIE_ACTORS_FILE);
+                graph = loader.buildGraph();
+            } catch (IOException e){
+                throw new RuntimeException(e);
+            }
+        }
+        System.out.println(graph);
+        checkTopK(graph);
+        checkOracle(graph);
+        checkHistogram(graph);
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        if(failures > 0) System.exit(1);
+    }
+
+    /**
+     * Report the outcome of one check
+     * @param name      What was checked
+     * @param checked   Number of comparisons made
+     * @param bad       Number of them that didn't match
+     */
+    private static void report(String name, long checked, long bad){
+        System.out.println((bad == 0 ? "ok   " : "FAIL ") + name + ": " + checked + " compared, " + bad + " mismatched");
+        if(bad > 0) failures++;
+    }
+
+    /**
+     * TopK must pick the same ids in the same order as a stable sort of all of them (so ties go to the smaller id), and
+     * BetweennessCentrality's precomputed ranks must match the order top() gives
+     * @param graph CSR graph to score
+     */
+    private static void checkTopK(CompactActorGraph graph){
+        Random random = new Random(7);
+        long checked = 0, bad = 0;
+        for(int trial = 0; trial < TOPK_TRIALS; trial++){
+            //few distinct values, so most ids tie with others
+            int n = random.nextInt(200);
+            double[] values = new double[n];
+            for(int i = 0; i < n; i++) values[i] = random.nextInt(20);
+            int k = random.nextInt(n + 5);
+            for(boolean largest: new boolean[]{true, false}){
+                Integer[] order = new Integer[n];
+                for(int i = 0; i < n; i++) order[i] = i;
+                Arrays.sort(order, (a, b) -> largest ? Double.compare(values[b], values[a]) : Double.compare(values[a], values[b]));
+                int[] top = TopK.select(values, k, largest);
+                boolean same = top.length == Math.min(k, n);
+                for(int i = 0; same && i < top.length; i++) same = top[i] == order[i];
+                if(!same) bad++;
+                checked++;
+            }
+        }
+        report("TopK vs stable sort", checked, bad);
+        BetweennessCentrality betweenness = new BetweennessCentrality(graph);
+        betweenness.compute(100, 1, null);
+        int[] top = betweenness.top(graph.numVertices());
+        bad = 0;
+        for(int i = 0; i < top.length; i++){
+            if(betweenness.rankOf(top[i]) != i) bad++;
+        }
+        report("betweenness ranks vs top()", top.length, bad);
+    }
+
+    /**
+     * Landmark bounds must bracket the BFS depth and distance() must equal it, for a freshly built oracle and for the
+     * same oracle saved and loaded back
+     * @param graph CSR graph to check on
+     */
+    private static void checkOracle(CompactActorGraph graph){
+        LandmarkOracle built = LandmarkOracle.compute(graph, 16, 0, Runtime.getRuntime().availableProcessors());
+        LandmarkOracle loaded = null;
+        try{
+            File file = File.createTempFile("landmarks", ".idx");
+            file.deleteOnExit();
+            built.save(file.getPath());
+            loaded = LandmarkOracle.load(graph, file.getPath(), 0);
+        } catch (IOException e){
+            System.err.println("Couldn't save the landmark index: " + e.getMessage());
+        }
+        if(loaded == null){
+            report("landmark index save and load", 1, 1);
+            loaded = built;
+        }
+        BFSEngine engine = new BFSEngine(graph);
+        Random random = new Random(1);
+        int n = graph.numVertices();
+        long checked = 0, bad = 0;
+        for(int s = 0; s < SOURCES && n > 0; s++){
+            int source = random.nextInt(n);
+            int[] depth = engine.run(source).getDepth();
+            for(int t = 0; t < n; t += STRIDE){
+                int want = depth[t] == -1 ? LandmarkOracle.UNREACHABLE : depth[t];
+                for(LandmarkOracle oracle: new LandmarkOracle[]{built, loaded}){
+                    int lower = oracle.lowerBound(source, t), upper = oracle.upperBound(source, t);
+                    if(lower > want || upper < want || oracle.distance(source, t) != want) bad++;
+                    checked++;
+                }
+            }
+        }
+        report("landmark bounds and distance vs BFS", checked, bad);
+    }
+
+    /**
+     * The bit-parallel histogram must count the same pairs at each separation, and give each source the same
+     * eccentricity, as one BFS per source; the sampled sources are the actors it gave an eccentricity
+     * @param graph CSR graph to check on
+     */
+    private static void checkHistogram(CompactActorGraph graph){
+        int n = graph.numVertices();
+        int cores = Runtime.getRuntime().availableProcessors();
+        BFSEngine engine = new BFSEngine(graph);
+        for(int threads: cores == 1 ? new int[]{1} : new int[]{1, cores}){
+            SeparationHistogram separations = new SeparationHistogram(graph, threads);
+            separations.compute(HISTOGRAM_SOURCES, 1, null);
+            long[] histogram = new long[separations.diameter() + 2];
+            long checked = 0, bad = 0;
+            for(int s = 0; s < n; s++){
+                if(separations.eccentricity(s) == -1) continue;
+                BFSResult result = engine.run(s);
+                int[] depth = result.getDepth(), order = result.getOrder();
+                int eccentricity = 0;
+                for(int i = 1; i < result.getCount(); i++){
+                    int d = depth[order[i]];
+                    histogram[Math.min(d, histogram.length - 1)]++;
+                    eccentricity = Math.max(eccentricity, d);
+                }
+                if(separations.eccentricity(s) != eccentricity) bad++;
+                checked++;
+            }
+            //pairsAt scales the per-source counts up to unordered pairs over the whole graph
+            double scale = 0.5 * n / separations.getNumSources();
+            for(int d = 1; d < histogram.length; d++){
+                if(Math.abs(separations.pairsAt(d) - histogram[d] * scale) > 1e-6 * Math.max(1, histogram[d] * scale)) bad++;
+                checked++;
+            }
+            if(separations.getNumSources() != Math.min(HISTOGRAM_SOURCES, n)) bad++;
+            report("separation histogram vs BFS per source, " + threads + " thread(s)", checked, bad);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Tool that writes synthetic input files in the same pipe-delimited format as bacon/ (actors.txt, movies.txt and
+ * movie-actors.txt), so loading and the game can be tested at production sizes offline
+ * The data comes from SyntheticCredits and goes straight to buffered file writers as it's made, so nothing but the
+ * buffers is held in memory however many credits are written
+ *
+ * Usage: BaconDataGenerator <output dir> <actors> [movies] [seed]
+ * (movies defaults to 2 for every 5 actors, about the ratio of the real files; 5 million actors is about 8 million credits)
+ */
+public class BaconDataGenerator {
+    private static final int BUFFER_BYTES = 1 << 20;    //write buffer per file
+
+    /**
+     * Write one data set
+     * @param dir       Directory to write the 3 files into (created if it doesn't exist)
+     * @param generator Generator of the data
+     * @return          Number of credits written
+     */
+    public static long write(Path dir, SyntheticCredits generator) throws IOException {
+        Files.createDirectories(dir);
+        try(Writer actors = open(dir.resolve("actors.txt"));
+            Writer movies = open(dir.resolve("movies.txt"));
+            Writer credits = open(dir.resolve("movie-actors.txt"))){
+            return generator.generate(new SyntheticCredits.Sink() {
+                @Override
+                public void actor(int id, String name) { line(actors, id + "|" + name); }
+                @Override
+                public void movie(int id, String name) { line(movies, id + "|" + name); }
+                @Override
+                public void credit(int movie, int actor) { line(credits, movie + "|" + actor); }
+            });
+        } catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Open a file for buffered UTF-8 writing
+     * @param file  File to write (replaced if it exists)
+     * @return      Writer for it
+     */
+    private static Writer open(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_BYTES);
+    }
+
+    /**
+     * Write one line from inside a Sink, which can't throw checked exceptions
+     * @param out   Writer for the file
+     * @param line  Line to write, without the newline
+     */
+    private static void line(Writer out, String line){
+        try{
+            out.write(line);
+            out.write('\n');
+        } catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: BaconDataGenerator <output dir> <actors> [movies] [seed]");
+            return;
+        }
+        Path dir = Paths.get(args[0]);
+        int numActors = Integer.parseInt(args[1]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        SyntheticCredits generator = args.length > 2 ? new SyntheticCredits(numActors, Integer.parseInt(args[2]), seed) : SyntheticCredits.scaledTo(numActors, seed);
+        long start = System.nanoTime();
+        long credits = write(dir, generator);
+        System.out.printf("Wrote %d actors, %d movies and %d credits to %s in %.1f s%n", generator.getNumActors(), generator.getNumMovies(),
+                credits, dir, (System.nanoTime() - start) / 1e9);
+    }
+}
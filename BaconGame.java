@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -7,10 +8,29 @@ import java.util.*;
 public class BaconGame {
     private Scanner scan;   //scanner to read user input
     private KevinBacon kb;  //KevinBacon object so we can make the main graph
-    private Graph<String, Set<String>> graph;   //Graph to hold the main graph
-    private Graph<String, Set<String>> bfsGraph;    //Graph to hold the BFS tree
+    private CompactActorGraph graph;   //Graph to hold the main graph
+    private BFSCache bfsCache;      //recently used BFS results, so flipping back to an old center is free
+    private static final long BFS_CACHE_BYTES = Long.getLong("bacon.bfsCacheBytes", 256L << 20);  //memory budget for bfsCache
+    private BFSResult bfsResult;    //BFS from the current center (parent/depth arrays instead of a tree graph)
+    private TreeMetrics treeMetrics;    //separation metrics of bfsResult, bucketed by depth
+    private PathQuery pathQuery;    //bidirectional search for paths between any two actors
+    private ConnectedComponents components; //component id and size of every actor
+    private DegreeIndex degrees;    //actors sorted by degree, for the 'd' command
+    private BipartiteIndex bipartite;   //every actor's movies and every movie's cast, for the 'f', 'm' and 'w' commands (null until they need it)
+    private NameSearchIndex nameSearch;     //prefix and typo-tolerant name lookups, for suggestions when a name doesn't exist
+    private static final int SUGGESTIONS = 5;   //most names to suggest
     String currentCenter;   //the current root actor (center of universe)
-    private List<CompareNames<String>> separations;     //list to hold all the actors in non-decreasing separation order (having to run this operation again and again is quite expensive)
+    private CentralityIndex centrality;     //every actor's average separation in non-decreasing order (saved to disk, since computing it is quite expensive)
+    private long inputChecksum;             //checksum of the input files, so a saved centrality index can tell if it's stale
+    private BetweennessCentrality betweenness;  //betweenness of every actor in the whole graph (computed on first use)
+    private static final int EXACT_BETWEENNESS_LIMIT = 20000;   //graphs bigger than this get sampled betweenness
+    private static final int BETWEENNESS_SAMPLES = 2000;        //number of sampled sources when they do
+    private LandmarkOracle landmarks;   //separation bounds from a few landmark actors, for the 'o' command (saved to disk too)
+    private static final int LANDMARKS = 16;    //number of landmark actors
+    private SeparationHistogram separations;    //separation distribution of the whole graph, for the 'h' command (computed on first use)
+    private static final int EXACT_HISTOGRAM_LIMIT = 50000;     //graphs bigger than this get a sampled histogram
+    private static final int HISTOGRAM_SAMPLES = 4096;          //number of sampled sources when they do
+    private static final String COMMANDS = "quipcdsbrfmwoah";  //letters of the game's commands (p2 and stats are named in full)
 
     /**
      * Creates the BaconGame UI object
@@ -19,10 +39,7 @@ public class BaconGame {
         //instantiate all our instance variables
         scan = new Scanner(System.in);
         kb = new KevinBacon();
-        graph = new AdjacencyMapGraph<>();
-        bfsGraph = new AdjacencyMapGraph<>();
         currentCenter = "Kevin Bacon";
-        separations = new ArrayList<>();
 
     }
 
@@ -30,18 +47,57 @@ public class BaconGame {
      * Plays the game!
      */
     public void play() {
-        kb.createGraph();
-        graph = kb.getMainGraph();
-        bfsGraph = GraphLibBacon.bfs(graph, "Kevin Bacon");
+        //start from the snapshot of an earlier session's graph if the input files haven't changed since
+        boolean checksummed = false;
+        try {
+            inputChecksum = KevinBacon.inputChecksum();
+            checksummed = true;
+        } catch (IOException e) {
+            System.err.println("Cannot checksum input files\n" + e.getMessage());
+        }
+        if (checksummed) kb.loadCompactGraph(inputChecksum);
+        else kb.createCompactGraph();
+        graph = kb.getCompactGraph();
+        bfsCache = new BFSCache(graph, BFS_CACHE_BYTES);
+        //a data set without the default center starts with none, until one is picked with u
+        int first = graph.indexOf(currentCenter);
+        if (first != -1) {
+            bfsResult = bfsCache.get(first);
+            treeMetrics = new TreeMetrics(bfsResult);
+        }
+        pathQuery = new PathQuery(graph);
+        components = new ConnectedComponents(graph);
+        degrees = new DegreeIndex(graph);
+        nameSearch = new NameSearchIndex(graph);
+        //pick up the centrality index from an earlier session too
+        if (checksummed) centrality = CentralityIndex.load(CentralityIndex.INDEX_FILE, inputChecksum, graph.numVertices());
         //PLEASE USE ALL LOWERCASE WHEN PLAYING THE GAME, please!
-        System.out.println("Commands:\n c <#>: list top (positive number) or bottom (negative) <#> centers of the universe, sorted by average separation\n d <low> <high>: list actors sorted by degree, with degree between low and high\n i: list actors with infinite separation from the current center\n p <name>: find path from <name> to current center of the universe\n s <low> <high>: list actors sorted by non-infinite separation from the current center, with separation between low and high\n u <name>: make <name> the center of the universe\n b <name>: get betweenness centrality of <name> from current center\n q: quit game");
-        System.out.println("\n" + currentCenter + " is now the center of the acting universe, connected to " + bfsGraph.numVertices() + "/9235 actors with average separation " + GraphLibBacon.averageSeparation(bfsGraph, "Kevin Bacon"));
+        System.out.println("Commands:\n c <#>: list top (positive number) or bottom (negative) <#> centers of the universe, sorted by average separation\n d <low> <high>: list actors sorted by degree, with degree between low and high\n i: list actors with infinite separation from the current center\n p <name>: find path from <name> to current center of the universe\n p2 <name> | <name>: find path between any two actors\n s <low> <high>: list actors sorted by non-infinite separation from the current center, with separation between low and high\n u <name>: make <name> the center of the universe\n b <name>: get betweenness centrality of <name> in the whole graph\n r <#>: list top <#> actors by betweenness centrality\n a <file>: apply a delta file of new actors (A|id|name), movies (M|id|name) and credits (C|movieID|actorID)\n f <name>: list the movies <name> appeared in\n m <movie>: list the cast of <movie>\n w <name> | <name>: list the movies two actors were both in\n o <name> | <name>: bound and then find the separation of any two actors with the landmark index\n h: show how far apart every pair of actors is (separation histogram, diameter and effective diameter)\n stats: show query counts and latencies (stats reset to clear them)\n q: quit game");
+        if (bfsResult != null) System.out.println("\n" + currentCenter + " is now the center of the acting universe, connected to " + components.componentSize(bfsResult.getSource()) + "/" + graph.numVertices() + " actors with average separation " + treeMetrics.averageSeparation());
+        else {
+            System.out.println("\n" + currentCenter + " isn't in the graph");
+            currentCenter = null;
+            noCenter();
+        }
+        //each command's metrics are recorded at the top of the next pass (or on quit), so its continues can't skip them
+        String last = null;
+        long start = 0, allocated = 0;
+        long visited = 0;   //actors the command worked through, for its metrics
         while (true) {
+            if (last != null) recordCommand(last, start, allocated, visited);
             System.out.println("\nKevin Bacon game >");
             String line = scan.nextLine();
             char c = line.charAt(0);
+            last = line;
+            start = Metrics.start();
+            allocated = Metrics.allocated();
+            visited = 0;
             //quit the game
-            if (c == 'q') break;
+            if (c == 'q') {
+                System.out.println(bfsCache);
+                recordCommand(line, start, allocated, visited);
+                break;
+            }
                 //make <name> the center of the universe
             else if (c == 'u') {
                 //get the input name
@@ -51,20 +107,54 @@ public class BaconGame {
                     if (i != arr.length - 1) fullName += arr[i] + " ";
                     else fullName += arr[i];
                 }
-                currentCenter = fullName;
-                //set bfsGraph to the tree centered from full name and print a message
-                try {
-                    bfsGraph = GraphLibBacon.bfs(graph, currentCenter);
-                } catch (NullPointerException e) {
-                    //if we mistype or pick a node that doesn't exist, say so and continue the game
-                    System.out.println("\"" + fullName + "\" doesn't exist in the graph");
+                //if we mistype or pick a node that doesn't exist, say so and continue the game
+                int center = graph.indexOf(fullName);
+                if (center == -1) {
+                    unknownActor(fullName);
                     continue;
                 }
-                System.out.println(fullName + " is now the center of the acting universe, connected to " + bfsGraph.numVertices() + "/9235 actors with average separation " + GraphLibBacon.averageSeparation(bfsGraph, currentCenter));
+                currentCenter = fullName;
+                //get the BFS from full name (cached if it's been the center recently) and print a message
+                bfsResult = bfsCache.get(center);
+                treeMetrics = new TreeMetrics(bfsResult);
+                visited = bfsResult.getCount();
+                System.out.println(fullName + " is now the center of the acting universe, connected to " + components.componentSize(bfsResult.getSource()) + "/" + graph.numVertices() + " actors with average separation " + treeMetrics.averageSeparation());
             }
             //list actors with infinite separation from current center (the missing vertices of this graph)
             else if (c == 'i') {
-                System.out.println(GraphLibBacon.missingVertices(graph, bfsGraph).toString());
+                if (bfsResult == null) {
+                    noCenter();
+                    continue;
+                }
+                Set<String> missing = GraphLibBacon.missingVertices(graph, components, bfsResult.getSource());
+                visited = missing.size();
+                System.out.println(missing.toString());
+            }
+            //get path between two arbitrary actors
+            else if (line.startsWith("p2")) {
+                //get the two names on either side of the '|'
+                String[] names = line.substring(2).split("\\|");
+                if (names.length != 2) {
+                    System.out.println("Please input two names separated by |");
+                    continue;
+                }
+                String fromName = names[0].trim();
+                String toName = names[1].trim();
+                int from = graph.indexOf(fromName);
+                int to = graph.indexOf(toName);
+                if (from == -1 || to == -1) {
+                    unknownActor(from == -1 ? fromName : toName);
+                    continue;
+                }
+                PathQuery.Path path = pathQuery.find(from, to);
+                visited = pathQuery.getVisited();
+                if (path == null) {
+                    System.out.println(fromName + " isn't connected to " + toName);
+                    continue;
+                }
+                //print their separation and the shared movies between each actor on the path
+                System.out.println(fromName + " is " + path.separation() + " away from " + toName);
+                System.out.println(path);
             }
             //get path
             else if (c == 'p') {
@@ -76,8 +166,18 @@ public class BaconGame {
                     if (i != arr.length - 1) fullName += arr[i] + " ";
                     else fullName += arr[i];
                 }
+                //if we mistype or pick a node that doesn't exist, say so and continue the game
+                if (graph.indexOf(fullName) == -1) {
+                    unknownActor(fullName);
+                    continue;
+                }
+                if (bfsResult == null) {
+                    noCenter();
+                    continue;
+                }
                 //get the path from that actor to the root
-                list = GraphLibBacon.getPath(bfsGraph, fullName);
+                list = GraphLibBacon.getPath(graph, bfsResult, fullName);
+                visited = list.size();
                 //if there's no path, move on
                 if (list.size() == 0) continue;
                 //print their number (distance from root)
@@ -87,7 +187,7 @@ public class BaconGame {
                 for (int i = 0; i < list.size() - 1; i++) {
                     String from = list.get(i);
                     String to = list.get(i + 1);
-                    sb.append(from + " appeared in " + bfsGraph.getLabel(from, to).toString() + " with " + to + "\n");
+                    sb.append(from + " appeared in " + graph.movieLabel(bfsResult.getParentEdge()[graph.indexOf(from)]).toString() + " with " + to + "\n");
                 }
                 System.out.println(sb.toString());
             }
@@ -100,29 +200,34 @@ public class BaconGame {
                     System.out.println("Please input a single number");
                     continue;
                 }
-                if (separations.size() == 0) {
-                    //create a list of CompareNames objects so we can sort every name(vertex) by its average separation
-                    for (String name : graph.vertices()) {
-                        double separation = GraphLibBacon.averageSeparation(GraphLibBacon.bfs(graph, name), name);
-                        if(separation>0) separations.add(new CompareNames(name, separation));
+                if (centrality == null) {
+                    //rank every actor by average separation, running the BFS from each one in parallel
+                    int total = graph.numVertices();
+                    centrality = CentralityIndex.compute(graph, inputChecksum, done -> System.out.print("\rRanking centers: " + (100L * done / total) + "%"));
+                    System.out.println();
+                    //save it so the next session can skip all of that
+                    try {
+                        centrality.save(CentralityIndex.INDEX_FILE);
+                    } catch (IOException e) {
+                        System.err.println("Cannot save centrality index\n" + e.getMessage());
                     }
-                    //sort the list according to ascending average separation
-                    separations.sort((o1, o2) -> Double.compare(o1.getMetric(), o2.getMetric()));
                 }
+                //can't list more actors than there are
+                if (Math.abs(num) > centrality.numRanked()) num = Integer.signum(num) * centrality.numRanked();
 //                System.out.println(list.toString());
                 StringBuilder sb = new StringBuilder();
                 if (num == 0) System.out.println("You picked nothing");
                     //if input is a positive number, we get n entries from the front (the n entries with the lowest separation)
                 else if (num > 0) {
                     for (int i = 0; i < num; i++) {
-                        sb.append(separations.get(i).toString() + "\n");
+                        sb.append(centerEntry(i).toString() + "\n");
                     }
                 }
                 //if input is negative number, we get n entries from the back (the n entries with the highest separation)
                 else {
                     num = num * -1;
-                    for (int i = separations.size() - 1; i > separations.size() - num - 1; i--) {
-                        sb.append(separations.get(i).toString() + "\n");
+                    for (int i = centrality.numRanked() - 1; i > centrality.numRanked() - num - 1; i--) {
+                        sb.append(centerEntry(i).toString() + "\n");
                     }
                 }
                 System.out.println(sb.toString());
@@ -132,46 +237,44 @@ public class BaconGame {
                 //get low and high amounts from input
                 double low = Double.parseDouble(line.split(" ")[1]);
                 double high = Double.parseDouble(line.split(" ")[2]);
-                ArrayList<CompareNames> list = new ArrayList<>();
-                //add all the actors with degrees between low and high to a list as CompareNames objects and their metrics as their degree
-                for (String name : graph.vertices()) {
-                    int degree = graph.inDegree(name);
-//                    System.out.println(name+" "+degree);
-                    if (degree >= low && degree <= high) list.add(new CompareNames(name, degree));
-                }
+                //degrees are whole numbers, so read the actors straight out of the degree index from ceil(low) to floor(high)
+                List<CompareNames<String>> list = degrees.degreesBetween((int) Math.ceil(low), (int) Math.floor(high));
+                visited = list.size();
                 //if there are no actors with degrees between low and high, state so and move on
                 if (list.size() == 0) {
                     System.out.println("There are no actors with degrees between " + low + " and " + high);
                     continue;
                 }
-                //otherwise, print all the actors with degrees between low and high in non-decreasing degree order
-                list.sort((o1, o2) -> Double.compare(o1.getMetric(), o2.getMetric()));
+                //otherwise, print all the actors with degrees between low and high (already in non-decreasing degree order)
                 System.out.println("Actors with degrees between " + low + " and " + high + " (inclusive), in non-decreasing order: ");
                 for (CompareNames cn : list) {
                     System.out.println(cn);
                 }
             }
+            //print the query metrics (or clear them with "stats reset")
+            else if (line.startsWith("stats")) {
+                if (line.endsWith("reset")) Metrics.reset();
+                System.out.print(Metrics.report());
+                System.out.println(bfsCache);
+            }
             //list actors sorted by non-infinite separation from the current center, with separation between low and high
             else if (c == 's') {
+                if (bfsResult == null) {
+                    noCenter();
+                    continue;
+                }
                 //get low and high amounts from input
                 double low = Double.parseDouble(line.split(" ")[1]);
                 double high = Double.parseDouble(line.split(" ")[2]);
-                ArrayList<CompareNames> list = GraphLibBacon.getSeparations(bfsGraph, currentCenter);
-//                System.out.println(list.toString());
-                //add all the actors with degrees between low and high to a list as CompareNames objects and their metrics as their separation
-                for (int i = 0; i < list.size(); i++) {
-                    if (list.get(i).getMetric() < low || list.get(i).getMetric() > high) {
-                        list.remove(i);
-                        i--;
-                    }
-                }
+                //separations are whole numbers, so read the actors straight out of the depth buckets from ceil(low) to floor(high)
+                List<CompareNames<String>> list = treeMetrics.separationsBetween(graph, (int) Math.ceil(low), (int) Math.floor(high));
+                visited = list.size();
                 //if there are no actors with separations between low and high, state so and move on
                 if (list.size() == 0) {
                     System.out.println("There are no actors with separation from " + currentCenter + " between " + low + " and " + high);
                     continue;
                 }
-                //otherwise, print all the actors between low and high in non-decreasing separation order
-                list.sort((o1, o2) -> Double.compare(o1.getMetric(), o2.getMetric()));
+                //otherwise, print all the actors between low and high (already in non-decreasing separation order)
                 System.out.println("Actors with separation from " + currentCenter + " between " + low + " and " + high + " (inclusive), in non-decreasing order: ");
                 for (CompareNames cn : list) {
                     System.out.println(cn);
@@ -186,13 +289,159 @@ public class BaconGame {
                     if (i != arr.length - 1) fullName += arr[i] + " ";
                     else fullName += arr[i];
                 }
-                //get their betweenness centrality
-                int centrality = GraphLibBacon.betweennessCentrality(bfsGraph,fullName);
-                if(centrality == -1){   //if they aren't connected (centrality is -1), state so and continue
-                    System.out.println(fullName+" isn't connected to "+currentCenter);
+                //if we mistype or pick a node that doesn't exist, say so and continue the game
+                int v = graph.indexOf(fullName);
+                if(v == -1){
+                    unknownActor(fullName);
+                    continue;
+                }
+                //look up their precomputed betweenness centrality
+                computeBetweenness();
+                System.out.println(fullName+"'s betweenness centrality is "+betweenness.centrality(v)+(betweenness.isSampled() ? " (estimated)" : "")+", rank "+(betweenness.rankOf(v)+1)+" of "+graph.numVertices());
+            }
+            //list top <#> actors by betweenness centrality
+            else if(c == 'r'){
+                int num;
+                try {
+                    num = Integer.parseInt(line.split(" ")[1]);
+                } catch (NumberFormatException e) {
+                    System.out.println("Please input a single number");
+                    continue;
+                }
+                computeBetweenness();
+                StringBuilder sb = new StringBuilder();
+                //only the top <#> are selected, and only they get CompareNames
+                for (int v : betweenness.top(num)) {
+                    sb.append(new CompareNames<>(graph.nameOf(v), betweenness.centrality(v)).toString() + "\n");
+                }
+                System.out.println(sb.toString());
+            }
+            //list the movies an actor appeared in
+            else if (c == 'f') {
+                String fullName = line.substring(1).trim();
+                int v = graph.indexOf(fullName);
+                if (v == -1) {
+                    unknownActor(fullName);
+                    continue;
+                }
+                List<String> movies = new ArrayList<>();
+                for (int movie : bipartite().filmography(v)) movies.add(graph.movieName(movie));
+                visited = movies.size();
+                System.out.println(fullName + " appeared in " + movies.size() + " movies: " + movies);
+            }
+            //list the cast of a movie
+            else if (c == 'm') {
+                String movieName = line.substring(1).trim();
+                int movie = graph.movieIndexOf(movieName);
+                if (movie == -1) {
+                    System.out.println("\"" + movieName + "\" doesn't exist in the graph");
+                    continue;
+                }
+                List<String> cast = new ArrayList<>();
+                for (int v : bipartite().cast(movie)) cast.add(graph.nameOf(v));
+                visited = cast.size();
+                System.out.println(movieName + " has a cast of " + cast.size() + ": " + cast);
+            }
+            //list the movies two actors were both in
+            else if (c == 'w') {
+                String[] names = line.substring(1).split("\\|");
+                if (names.length != 2) {
+                    System.out.println("Please input two names separated by |");
+                    continue;
+                }
+                String fromName = names[0].trim();
+                String toName = names[1].trim();
+                int from = graph.indexOf(fromName);
+                int to = graph.indexOf(toName);
+                if (from == -1 || to == -1) {
+                    unknownActor(from == -1 ? fromName : toName);
+                    continue;
+                }
+                List<String> shared = new ArrayList<>();
+                for (int movie : bipartite().sharedMovies(from, to)) shared.add(graph.movieName(movie));
+                visited = shared.size();
+                if (shared.isEmpty()) System.out.println(fromName + " and " + toName + " never appeared in a movie together");
+                else System.out.println(fromName + " and " + toName + " were both in " + shared);
+            }
+            //separation of any two actors: landmark bounds first, then a search pruned by them
+            else if (c == 'o') {
+                String[] names = line.substring(1).split("\\|");
+                if (names.length != 2) {
+                    System.out.println("Please input two names separated by |");
+                    continue;
+                }
+                String fromName = names[0].trim();
+                String toName = names[1].trim();
+                int from = graph.indexOf(fromName);
+                int to = graph.indexOf(toName);
+                if (from == -1 || to == -1) {
+                    unknownActor(from == -1 ? fromName : toName);
                     continue;
                 }
-                System.out.println(fullName+"'s betweenness centrality in "+ currentCenter+" 's centered tree is "+GraphLibBacon.betweennessCentrality(bfsGraph,fullName));
+                loadLandmarks();
+                int lower = landmarks.lowerBound(from, to), upper = landmarks.upperBound(from, to);
+                long queryStart = System.nanoTime();
+                int separation = landmarks.distance(from, to);
+                double millis = (System.nanoTime() - queryStart) / 1e6;
+                if (separation == LandmarkOracle.UNREACHABLE) {
+                    System.out.printf("%s and %s aren't connected (%.2f ms)%n", fromName, toName, millis);
+                    continue;
+                }
+                String bounds = lower == upper ? "exact" : lower + " to " + (upper == LandmarkOracle.UNREACHABLE ? "?" : upper);
+                System.out.printf("%s and %s are separated by %d (landmark bounds %s, %.2f ms)%n", fromName, toName, separation, bounds, millis);
+            }
+            //separation distribution of the whole graph
+            else if (c == 'h') {
+                computeSeparations();
+                double pairs = separations.connectedPairs();
+                String estimated = separations.isSampled() ? " (estimated from " + separations.getNumSources() + " sources)" : "";
+                System.out.printf("Separations between %.0f connected pairs of actors%s:%n", pairs, estimated);
+                for (int d = 1; d <= separations.diameter(); d++) {
+                    System.out.printf("%3d: %14.0f  %6.2f%%%n", d, separations.pairsAt(d), 100 * separations.pairsAt(d) / pairs);
+                }
+                System.out.printf("Average separation %.3f, effective diameter %.2f, diameter %s%d%n", separations.averageSeparation(),
+                        separations.effectiveDiameter(), separations.isSampled() ? "at least " : "", separations.diameter());
+                int center = bfsResult == null ? -1 : bfsResult.getSource();
+                if (center != -1 && separations.eccentricity(center) != -1) System.out.println(currentCenter + "'s eccentricity is " + separations.eccentricity(center));
+                visited = separations.getNumSources();
+            }
+            //apply a delta file of new actors, movies and credits to the live graph
+            else if(c == 'a'){
+                String file = line.substring(1).trim();
+                long applyStart = System.nanoTime();
+                DeltaLoader.Delta delta;
+                try {
+                    delta = new DeltaLoader(graph, kb.getActorIds(), kb.getMovieIds()).apply(file);
+                    //anything saved from now on came from more than the input files, so its checksum has to say so
+                    inputChecksum = 31 * inputChecksum + KevinBacon.checksum(file);
+                } catch (IOException e) {
+                    System.err.println("Cannot read delta file\n" + e.getMessage());
+                    continue;
+                }
+                //separations only shrink when edges are added, so repair the cached BFS results and components in place
+                int repaired = bfsCache.repair(delta.getNewEdges());
+                components.addEdges(graph.numVertices(), delta.getNewEdges());
+                if (bfsResult != null) {
+                    //the metrics only need redoing if the center's result was repaired (or evicted and run again)
+                    BFSResult current = bfsCache.get(bfsResult.getSource());
+                    if (current != bfsResult || repaired > 0) treeMetrics = new TreeMetrics(current);
+                    bfsResult = current;
+                }
+                //only the new actors and the ends of the new edges move in the degree order
+                degrees.addEdges(graph.numVertices(), delta.getNewEdges());
+                if (delta.getActors() + delta.getMovies() + delta.getCredits() > 0) bipartite = null;
+                if (delta.getActors() > 0 && !nameSearch.addNewActors()) nameSearch = new NameSearchIndex(graph);
+                //the whole-graph rankings are out of date, so they're recomputed the next time they're asked for
+                if (delta.getActors() + delta.getCredits() > 0) {
+                    centrality = null;
+                    betweenness = null;
+                    separations = null;
+                }
+                //the depth arrays only cover the actors and edges there were when they were built
+                if (delta.numNewEdges() + delta.getActors() > 0) {
+                    landmarks = null;
+                }
+                System.out.printf("Applied %s in %.1f ms, repaired %d cached BFS results%n", delta, (System.nanoTime() - applyStart) / 1e6, repaired);
             }
             //some invlaid command character
             else{
@@ -201,6 +450,108 @@ public class BaconGame {
         }
     }
 
+    /**
+     * Name a command line is recorded under in the metrics
+     * @param line  Command line as typed
+     * @return      The command's letter(s)
+     */
+    private static String commandName(String line) {
+        if (line.startsWith("p2")) return "p2";
+        if (line.startsWith("stats")) return "stats";
+        //anything else is named by its letter, and every unknown letter shares one op so typos can't pile up ops
+        return COMMANDS.indexOf(line.charAt(0)) != -1 ? line.substring(0, 1) : "invalid";
+    }
+
+    /**
+     * Record a finished command's metrics
+     * @param line      Command line as typed
+     * @param start     Metrics.start() from when the command began
+     * @param allocated Metrics.allocated() from when the command began
+     * @param visited   Actors the command worked through
+     */
+    private static void recordCommand(String line, long start, long allocated, long visited) {
+        if (Metrics.ENABLED) Metrics.op("command " + commandName(line)).record(start, allocated, visited);
+    }
+
+    /**
+     * Every actor's movies and every movie's cast, built the first time they're asked for after a delta changed them
+     * @return  The bipartite index of the graph as it is now
+     */
+    private BipartiteIndex bipartite() {
+        if (bipartite == null) bipartite = BipartiteIndex.of(graph);
+        return bipartite;
+    }
+
+    /**
+     * Say that a command needs a center of the universe, when the data set doesn't have the default one
+     */
+    private void noCenter() {
+        System.out.println("There's no center of the universe yet: pick one with u <name>");
+    }
+
+    /**
+     * Say that a name doesn't exist in the graph, with the closest actual names if there are any
+     * @param name  Name as typed
+     */
+    private void unknownActor(String name) {
+        System.out.println("\"" + name + "\" doesn't exist in the graph");
+        List<String> suggestions = nameSearch.suggest(name, SUGGESTIONS);
+        if (!suggestions.isEmpty()) System.out.println("Did you mean: " + String.join(", ", suggestions) + "?");
+    }
+
+    /**
+     * Map the saved landmark index, or build it (in parallel) and save it the first time separations are asked for
+     */
+    private void loadLandmarks() {
+        if (landmarks != null) return;
+        landmarks = LandmarkOracle.load(graph, LandmarkOracle.INDEX_FILE, inputChecksum);
+        if (landmarks != null) return;
+        long buildStart = System.nanoTime();
+        landmarks = LandmarkOracle.compute(graph, LANDMARKS, inputChecksum, Runtime.getRuntime().availableProcessors());
+        System.out.printf("Built landmark index of %d actors in %.1f ms%n", landmarks.numLandmarks(), (System.nanoTime() - buildStart) / 1e6);
+        try {
+            landmarks.save(LandmarkOracle.INDEX_FILE);
+        } catch (IOException e) {
+            System.err.println("Cannot save landmark index\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Run Brandes' algorithm over the whole graph the first time betweenness is asked for
+     * (sampling the sources on big graphs so it finishes in reasonable time)
+     */
+    private void computeBetweenness() {
+        if (betweenness != null) return;
+        boolean exact = graph.numVertices() <= EXACT_BETWEENNESS_LIMIT;
+        int sources = exact ? graph.numVertices() : BETWEENNESS_SAMPLES;
+        betweenness = new BetweennessCentrality(graph);
+        betweenness.compute(exact ? 0 : BETWEENNESS_SAMPLES, 1, done -> System.out.print("\rComputing betweenness: " + (100L * done / sources) + "%"));
+        System.out.println();
+    }
+
+    /**
+     * Run the multi-source BFS over the whole graph the first time the separation histogram is asked for
+     * (sampling the sources on big graphs so it finishes in reasonable time)
+     */
+    private void computeSeparations() {
+        if (separations != null) return;
+        boolean exact = graph.numVertices() <= EXACT_HISTOGRAM_LIMIT;
+        int sources = exact ? graph.numVertices() : HISTOGRAM_SAMPLES;
+        separations = new SeparationHistogram(graph);
+        separations.compute(exact ? 0 : HISTOGRAM_SAMPLES, 1, done -> System.out.print("\rMeasuring separations: " + (100L * done / sources) + "%"));
+        System.out.println();
+    }
+
+    /**
+     * Row of the 'c' listing for a position in the centrality ranking
+     * @param rank  Position in the ranking (0 is the best center)
+     * @return      CompareNames with the actor's name and average separation
+     */
+    private CompareNames<String> centerEntry(int rank) {
+        int v = centrality.rankedActor(rank);
+        return new CompareNames<>(graph.nameOf(v), centrality.averageSeparation(v));
+    }
+
     public static void main(String[] args) {
         BaconGame game = new BaconGame();
         game.play();
@@ -0,0 +1,144 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for BaconServer: opens a number of connections and has each one send a random mix of queries as
+ * fast as the server answers them for a set time, then reports the throughput and latency percentiles
+ * Actor names for the queries are read from the same actors file the server loads
+ */
+public class BaconLoadClient {
+    private final String host;
+    private final int port;
+    private final List<String> names;   //actor names to ask about
+
+    /**
+     * Construct a client for a server
+     * @param host  Server host
+     * @param port  Server port
+     * @param names Actor names to pick queries from
+     */
+    public BaconLoadClient(String host, int port, List<String> names){
+        this.host = host;
+        this.port = port;
+        this.names = names;
+    }
+
+    /**
+     * Read the actor names out of an actorID|actorName file
+     * @param file  Path of the actors file
+     * @return      Every actor name in the file
+     */
+    static List<String> readNames(String file) throws IOException {
+        List<String> names = new ArrayList<>();
+        try(BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))){
+            String line;
+            while((line = input.readLine()) != null){
+                int bar = line.indexOf('|');
+                if(bar != -1) names.add(line.substring(bar + 1));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Next query of the mix: mostly paths, with some center changes, separation counts and centrality lookups
+     * @param random    This connection's random numbers
+     * @return          Command line to send
+     */
+    private String nextQuery(Random random){
+        int roll = random.nextInt(100);
+        String name = names.get(random.nextInt(names.size()));
+        if(roll < 10) return "u " + name;
+        if(roll < 50) return "p " + name;
+        if(roll < 90) return "p2 " + name + " | " + names.get(random.nextInt(names.size()));
+        if(roll < 95) return "i";
+        return "c 10";
+    }
+
+    /**
+     * Hammer the server from a number of connections at once
+     * @param connections   Number of concurrent connections
+     * @param seconds       How long to send queries for
+     */
+    public void run(int connections, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        AtomicLong errors = new AtomicLong();
+        Thread[] threads = new Thread[connections];
+        for(int t = 0; t < connections; t++){
+            int id = t;
+            threads[t] = new Thread(() -> {
+                long[] mine = new long[1 << 12];
+                int count = 0;
+                Random random = new Random(id);
+                try(Socket socket = new Socket(host, port);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)))){
+                    while(System.nanoTime() < deadline){
+                        String query = nextQuery(random);
+                        long start = System.nanoTime();
+                        out.println(query);
+                        out.flush();
+                        //read the whole reply
+                        String line;
+                        while((line = in.readLine()) != null && !line.equals(BaconServer.END)){
+                            if(line.startsWith("ERR")) errors.incrementAndGet();
+                        }
+                        if(line == null) break;
+                        if(count == mine.length) mine = Arrays.copyOf(mine, 2 * count);
+                        mine[count++] = System.nanoTime() - start;
+                    }
+                    out.println("q");
+                    out.flush();
+                } catch (IOException e){
+                    System.err.println("Connection " + id + " failed: " + e.getMessage());
+                }
+                latencies[id] = mine;
+                counts[id] = count;
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) thread.join();
+        //pool every connection's latencies to get the percentiles
+        int total = 0;
+        for(int count: counts) total += count;
+        long[] all = new long[total];
+        int at = 0;
+        for(int t = 0; t < connections; t++){
+            System.arraycopy(latencies[t], 0, all, at, counts[t]);
+            at += counts[t];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d connections, %d queries in %d s: %.0f queries/s, %d errors%n", connections, total, seconds, (double) total / seconds, errors.get());
+        if(total > 0){
+            System.out.printf("latency p50 %.3f ms, p99 %.3f ms, max %.3f ms%n", percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[total - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Percentile of sorted values (nearest rank)
+     * @param sorted    Values in ascending order
+     * @param p         Percentile between 0 and 1
+     * @return          The value at that percentile
+     */
+    private static long percentile(long[] sorted, double p){
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+
+    /**
+     * Run the load generator
+     * @param args  Optional connections (default 16), seconds (default 10), host (default localhost) and port
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String host = args.length > 2 ? args[2] : "localhost";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : BaconServer.DEFAULT_PORT;
+        new BaconLoadClient(host, port, readNames(KevinBacon.ACTORS_FILE)).run(connections, seconds);
+    }
+}
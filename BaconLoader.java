@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Single-pass streaming loader for actors.txt, movies.txt and movie-actors.txt
+ * Reads each file through a large NIO buffer and parses the pipe-delimited ids straight out of the bytes (no
+ * readLine/split per line), then hands dense (movie, actor) id credits to the graph builder without building any
+ * name-keyed maps in between
+ */
+public class BaconLoader {
+    private static final int BUFFER_BYTES = 1 << 20;    //bytes read from the channel at a time
+    private static final Metrics.Op LOAD_ACTORS = Metrics.op("load actors");
+    private static final Metrics.Op LOAD_MOVIES = Metrics.op("load movies");
+    private static final Metrics.Op LOAD_CREDITS = Metrics.op("load credits");
+    private static final Metrics.Op BUILD_GRAPH = Metrics.op("build graph");
+    private static final Metrics.Op BUILD_INDEX = Metrics.op("build bipartite index");
+
+    private final IntIntHashMap actorDense = new IntIntHashMap(1 << 16);   //actors.txt id -> dense actor id
+    private final IntIntHashMap movieDense = new IntIntHashMap(1 << 16);   //movies.txt id -> dense movie id
+    private final NameDictionary actorNames = new NameDictionary();    //dense actor id <-> actor name
+    private final NameDictionary movieNames = new NameDictionary();    //dense movie id <-> movie name
+    private final IntList creditMovies = new IntList(1 << 16);     //dense movie id of each credit
+    private final IntList creditActors = new IntList(1 << 16);     //dense actor id of each credit
+    private int skippedCredits;     //credits naming an actor or movie that isn't in the other files
+
+    /**
+     * Handles one line of a file, given as a range of the read buffer (without the line terminator)
+     */
+    private interface LineHandler {
+        void line(byte[] buf, int start, int end);
+    }
+
+    /**
+     * Load all 3 files
+     * @param actorsFile        actorID|actorName file
+     * @param moviesFile        movieID|movieName file
+     * @param movieActorsFile   movieID|actorID file
+     */
+    public void load(String actorsFile, String moviesFile, String movieActorsFile) throws IOException {
+        //names go straight from the read buffer into the dictionaries without becoming Strings; entries that share
+        //a name share a dense id, the same way the name-keyed graph merges them
+        long stageStart = Metrics.start(), stageAllocated = Metrics.allocated();
+        scan(actorsFile, (buf, start, end) -> {
+            int bar = indexOf(buf, start, end, (byte)'|');
+            actorDense.put(parseInt(buf, start, bar), actorNames.add(buf, bar + 1, end));
+        });
+        LOAD_ACTORS.record(stageStart, stageAllocated, actorDense.size());
+        stageStart = Metrics.start();
+        stageAllocated = Metrics.allocated();
+        scan(moviesFile, (buf, start, end) -> {
+            int bar = indexOf(buf, start, end, (byte)'|');
+            movieDense.put(parseInt(buf, start, bar), movieNames.add(buf, bar + 1, end));
+        });
+        LOAD_MOVIES.record(stageStart, stageAllocated, movieDense.size());
+        stageStart = Metrics.start();
+        stageAllocated = Metrics.allocated();
+        scan(movieActorsFile, (buf, start, end) -> {
+            int bar = indexOf(buf, start, end, (byte)'|');
+            int movie = movieDense.get(parseInt(buf, start, bar), -1);
+            int actor = actorDense.get(parseInt(buf, bar + 1, end), -1);
+            //skip credits that point at an actor or movie we don't know about
+            if(movie == -1 || actor == -1){
+                skippedCredits++;
+                return;
+            }
+            creditMovies.add(movie);
+            creditActors.add(actor);
+        });
+        actorNames.trim();
+        movieNames.trim();
+        LOAD_CREDITS.record(stageStart, stageAllocated, creditMovies.size() + skippedCredits);
+    }
+
+    /**
+     * Build the CSR actor graph from the loaded credits
+     * @return  The main graph
+     */
+    public CompactActorGraph buildGraph(){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        CompactActorGraph graph = CompactActorGraph.fromCredits(actorNames, movieNames, creditMovies.array(), creditActors.array(), creditMovies.size());
+        BUILD_GRAPH.record(start, allocated, graph.numVertices());
+        return graph;
+    }
+
+    /**
+     * Number of co-star pairs the casts expand to in the actor graph (repeated credits are counted too, so this is an
+     * upper bound), to tell whether building the graph is affordable before trying
+     * @return  Sum over the movies of cast size choose 2
+     */
+    public long actorPairs(){
+        int[] castSizes = new int[movieNames.size()];
+        int[] movies = creditMovies.array();
+        for(int i = 0; i < creditMovies.size(); i++) castSizes[movies[i]]++;
+        long pairs = 0;
+        for(int size: castSizes) pairs += (long) size * (size - 1) / 2;
+        return pairs;
+    }
+
+    /**
+     * Build the bipartite actor-movie index from the loaded credits, without making any co-star pairs
+     * @return  The index
+     */
+    public BipartiteIndex buildIndex(){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        BipartiteIndex index = BipartiteIndex.fromCredits(actorNames.size(), movieNames.size(), creditMovies.array(), creditActors.array(), creditMovies.size());
+        BUILD_INDEX.record(start, allocated, index.numCredits());
+        return index;
+    }
+
+    /**
+     * Build a graph with every actor, movie and cast but no co-star edges, for looking names up next to an index
+     * @param index Index built from the same credits (its cast arrays are shared, not copied)
+     * @return      The graph, with no edges
+     */
+    public CompactActorGraph buildNames(BipartiteIndex index){
+        return new CompactActorGraph(actorNames, movieNames, new long[0], new int[1], new int[0], index.castOffsets(), index.castActors());
+    }
+
+    //getters for what was loaded
+    public int numActors() { return actorNames.size(); }
+    public int numMovies() { return movieNames.size(); }
+    public int numCredits() { return creditMovies.size(); }
+    public int getSkippedCredits() { return skippedCredits; }
+    public IntIntHashMap getActorIds() { return actorDense; }
+    public IntIntHashMap getMovieIds() { return movieDense; }
+
+    /**
+     * The loaded credits as arrays of dense ids (valid up to numCredits())
+     * @return  {movie ids, actor ids}
+     */
+    public int[][] getCredits() { return new int[][]{creditMovies.array(), creditActors.array()}; }
+
+    /**
+     * Stream a file through one big buffer, calling the handler once per non-empty line
+     * A line that runs off the end of the buffer is moved to the front before the next read
+     * @param file      File to read
+     * @param handler   Handler for each line
+     */
+    private static void scan(String file, LineHandler handler) throws IOException {
+        byte[] buf = new byte[BUFFER_BYTES];
+        int filled = 0;
+        try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)){
+            while(true){
+                //grow the buffer if a single line is longer than all of it
+                if(filled == buf.length) buf = Arrays.copyOf(buf, 2 * buf.length);
+                int read = channel.read(ByteBuffer.wrap(buf, filled, buf.length - filled));
+                boolean eof = read == -1;
+                if(!eof) filled += read;
+                int start = 0;
+                for(int i = 0; i < filled; i++){
+                    if(buf[i] == '\n'){
+                        emit(buf, start, i, handler);
+                        start = i + 1;
+                    }
+                }
+                if(eof){
+                    //the last line might not end with a newline
+                    emit(buf, start, filled, handler);
+                    return;
+                }
+                System.arraycopy(buf, start, buf, 0, filled - start);
+                filled -= start;
+            }
+        }
+    }
+
+    /**
+     * Pass a line on to the handler without its '\r' (if the file has Windows line endings), skipping blank lines
+     * @param buf       Read buffer
+     * @param start     Start of the line
+     * @param end       End of the line (exclusive)
+     * @param handler   Handler for the line
+     */
+    private static void emit(byte[] buf, int start, int end, LineHandler handler){
+        if(end > start && buf[end - 1] == '\r') end--;
+        if(end > start) handler.line(buf, start, end);
+    }
+
+    /**
+     * Find a byte in a range
+     * @param buf   Read buffer
+     * @param start Start of the range
+     * @param end   End of the range (exclusive)
+     * @param b     Byte to look for
+     * @return      Index of the first b in the range, or end if it isn't there
+     */
+    private static int indexOf(byte[] buf, int start, int end, byte b){
+        for(int i = start; i < end; i++){
+            if(buf[i] == b) return i;
+        }
+        return end;
+    }
+
+    /**
+     * Parse a (possibly negative) decimal int out of a range of bytes without making a String
+     * @param buf   Read buffer
+     * @param start Start of the digits
+     * @param end   End of the digits (exclusive)
+     * @return      The parsed int
+     */
+    private static int parseInt(byte[] buf, int start, int end){
+        boolean negative = start < end && buf[start] == '-';
+        int i = negative ? start + 1 : start;
+        if(i == end) throw new NumberFormatException("Empty id in line: " + new String(buf, start, end - start, StandardCharsets.UTF_8));
+        int value = 0;
+        for(; i < end; i++){
+            int digit = buf[i] - '0';
+            if(digit < 0 || digit > 9) throw new NumberFormatException("Bad id: " + new String(buf, start, end - start, StandardCharsets.UTF_8));
+            value = 10 * value + digit;
+        }
+        return negative ? -value : value;
+    }
+}
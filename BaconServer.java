@@ -0,0 +1,331 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Query service mode of the game: loads the graph once and answers many players at the same time over a line protocol
+ * on a local socket
+ * Everything shared (the graph, the indexes, the BFS cache) is either read-only or thread-safe, so each connection
+ * only keeps its own center; BFS and path search scratch arrays come out of pools instead of being made per session
+ * Each connection runs on its own virtual thread when the JVM has them (Java 21+), or on a cached thread pool if not
+ *
+ * Protocol: one command per line, in the same format as the game's commands (u, p, p2, s, d, c, i, stats, q). Every reply is
+ * any number of lines followed by a line with just "."; failed commands reply with a line starting "ERR"
+ */
+public class BaconServer {
+    public static final int DEFAULT_PORT = 4747;
+    public static final String END = ".";      //line that ends every reply
+    private static final String DEFAULT_CENTER = "Kevin Bacon";
+    private static final String COMMANDS = "upsdci";    //letters of the protocol's commands (p2 and stats are named in full)
+    private static final long BFS_CACHE_BYTES = Long.getLong("bacon.bfsCacheBytes", 256L << 20);  //memory budget for the shared BFS cache
+
+    private final CompactActorGraph graph;              //shared read-only graph
+    private final BFSCache bfsCache;                    //BFS results shared between sessions with the same center
+    private final ScratchPool<PathQuery> pathQueries;   //bidirectional search scratch, one per concurrent p2
+    private final ConnectedComponents components;       //component id and size of every actor
+    private final DegreeIndex degrees;                  //actors sorted by degree
+    private final NameSearchIndex nameSearch;           //suggestions for names that don't exist
+    private final long inputChecksum;                   //checksum of the input files, for the centrality index
+    private volatile CentralityIndex centrality;        //every actor's average separation (computed on first use if not saved)
+    private final ReentrantLock centralityLock = new ReentrantLock();  //held by the one session computing centrality
+    private final AtomicInteger sessions = new AtomicInteger();     //connections open right now
+    private final AtomicLong queries = new AtomicLong();            //commands answered since startup
+
+    /**
+     * Construct a server over a loaded graph, building the shared indexes
+     * @param graph         CSR graph to serve
+     * @param inputChecksum Checksum of the input files the graph came from
+     */
+    public BaconServer(CompactActorGraph graph, long inputChecksum){
+        this.graph = graph;
+        this.inputChecksum = inputChecksum;
+        bfsCache = new BFSCache(graph, BFS_CACHE_BYTES);
+        pathQueries = new ScratchPool<>(() -> new PathQuery(graph));
+        components = new ConnectedComponents(graph);
+        degrees = new DegreeIndex(graph);
+        nameSearch = new NameSearchIndex(graph);
+        centrality = CentralityIndex.load(CentralityIndex.INDEX_FILE, inputChecksum, graph.numVertices());
+    }
+
+    /**
+     * Executor that gives every task its own virtual thread, looked up by reflection so this still compiles and runs
+     * (on a cached pool of platform threads) before Java 21
+     * @return  Executor for the sessions
+     */
+    static ExecutorService newSessionExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e){
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Accept connections until the server socket is closed
+     * Only listens on the loopback interface, since the protocol has no authentication
+     * @param port  Local port to listen on
+     */
+    public void serve(int port) throws IOException {
+        ExecutorService executor = newSessionExecutor();
+        try(ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())){
+            System.out.println("Serving " + graph.numVertices() + " actors on port " + server.getLocalPort() + " (" + executor.getClass().getSimpleName() + ")");
+            while(true){
+                Socket socket = server.accept();
+                executor.execute(new Session(socket));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * One player's connection, with its own center of the universe
+     */
+    private class Session implements Runnable {
+        private final Socket socket;
+        private BFSResult bfsResult;        //BFS from this session's center (shared with the cache, never modified)
+        private TreeMetrics treeMetrics;    //separation metrics of bfsResult
+        private String center;              //name of this session's center
+
+        Session(Socket socket){
+            this.socket = socket;
+        }
+
+        /**
+         * Make an actor this session's center
+         * @param v Dense id of the new center
+         */
+        private void setCenter(int v){
+            bfsResult = bfsCache.get(v);
+            treeMetrics = new TreeMetrics(bfsResult);
+            center = graph.nameOf(v);
+        }
+
+        @Override
+        public void run() {
+            sessions.incrementAndGet();
+            try(Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)))){
+                //the first center costs a BFS, so it's done here on the session's thread instead of the accept thread
+                int v = graph.indexOf(DEFAULT_CENTER);
+                if(v != -1) setCenter(v);
+                String line;
+                while((line = in.readLine()) != null){
+                    line = line.trim();
+                    if(line.equals("q")) break;
+                    StringBuilder reply = new StringBuilder();
+                    long start = Metrics.start(), allocated = Metrics.allocated();
+                    try{
+                        handle(line, reply);
+                    } catch (RuntimeException e){
+                        //a bad command only fails that command, not the session
+                        reply.setLength(0);
+                        reply.append("ERR ").append(e).append("\n");
+                    }
+                    if(Metrics.ENABLED) Metrics.op("server " + commandName(line)).record(start, allocated, 0);
+                    reply.append(END).append("\n");
+                    out.print(reply);
+                    out.flush();
+                    queries.incrementAndGet();
+                }
+            } catch (IOException e){
+                System.err.println("Session closed: " + e.getMessage());
+            } finally {
+                sessions.decrementAndGet();
+            }
+        }
+
+        /**
+         * Answer one command
+         * @param line  Command line from the client
+         * @param reply Lines of the reply (without the END line)
+         */
+        private void handle(String line, StringBuilder reply){
+            if(line.isEmpty()){
+                reply.append("ERR empty command\n");
+                return;
+            }
+            //the server-wide metrics
+            if(line.startsWith("stats")){
+                if(line.endsWith("reset")) Metrics.reset();
+                reply.append(Metrics.report()).append(bfsCache).append("\n")
+                        .append(sessions.get()).append(" sessions open, ").append(queries.get()).append(" queries answered\n");
+                return;
+            }
+            char c = line.charAt(0);
+            String arg = line.substring(line.startsWith("p2") ? 2 : 1).trim();
+            //make <name> the center of the universe
+            if(c == 'u'){
+                int v = actor(arg, reply);
+                if(v == -1) return;
+                setCenter(v);
+                reply.append(center).append(" is now the center of the acting universe, connected to ").append(components.componentSize(v))
+                        .append("/").append(graph.numVertices()).append(" actors with average separation ").append(treeMetrics.averageSeparation()).append("\n");
+            }
+            //get path between two arbitrary actors
+            else if(line.startsWith("p2")){
+                String[] names = arg.split("\\|");
+                if(names.length != 2){
+                    reply.append("ERR please input two names separated by |\n");
+                    return;
+                }
+                int from = actor(names[0].trim(), reply);
+                int to = from == -1 ? -1 : actor(names[1].trim(), reply);
+                if(to == -1) return;
+                PathQuery query = pathQueries.acquire();
+                PathQuery.Path path;
+                try{
+                    path = query.find(from, to);
+                } finally {
+                    pathQueries.release(query);
+                }
+                if(path == null){
+                    reply.append(graph.nameOf(from)).append(" isn't connected to ").append(graph.nameOf(to)).append("\n");
+                    return;
+                }
+                reply.append(graph.nameOf(from)).append(" is ").append(path.separation()).append(" away from ").append(graph.nameOf(to)).append("\n");
+                reply.append(path);
+            }
+            //get path to the center
+            else if(c == 'p'){
+                if(!hasCenter(reply)) return;
+                int v = actor(arg, reply);
+                if(v == -1) return;
+                if(!bfsResult.isReached(v)){
+                    reply.append(arg).append(" isn't connected to ").append(center).append("\n");
+                    return;
+                }
+                reply.append(arg).append("'s number is ").append(bfsResult.getDepth()[v]).append("\n");
+                for(int curr = v; bfsResult.getParent()[curr] != -1; curr = bfsResult.getParent()[curr]){
+                    int next = bfsResult.getParent()[curr];
+                    reply.append(graph.nameOf(curr)).append(" appeared in ").append(graph.movieLabel(bfsResult.getParentEdge()[curr]))
+                            .append(" with ").append(graph.nameOf(next)).append("\n");
+                }
+            }
+            //count actors with infinite separation from the center
+            else if(c == 'i'){
+                if(!hasCenter(reply)) return;
+                reply.append(graph.numVertices() - components.componentSize(bfsResult.getSource())).append(" actors aren't connected to ").append(center).append("\n");
+            }
+            //list actors by separation from the center, or by degree, between low and high
+            else if(c == 's' || c == 'd'){
+                String[] bounds = arg.split("\\s+");
+                if(bounds.length != 2){
+                    reply.append("ERR please input <low> <high>\n");
+                    return;
+                }
+                int low = (int) Math.ceil(Double.parseDouble(bounds[0]));
+                int high = (int) Math.floor(Double.parseDouble(bounds[1]));
+                List<CompareNames<String>> list;
+                if(c == 'd') list = degrees.degreesBetween(low, high);
+                else if(hasCenter(reply)) list = treeMetrics.separationsBetween(graph, low, high);
+                else return;
+                for(CompareNames<String> cn: list) reply.append(cn).append("\n");
+            }
+            //list top (positive) or bottom (negative) centers of the universe
+            else if(c == 'c'){
+                CentralityIndex index = centrality();
+                int num = Integer.parseInt(arg);
+                if(Math.abs(num) > index.numRanked()) num = Integer.signum(num) * index.numRanked();
+                for(int i = 0; i < Math.abs(num); i++){
+                    int v = index.rankedActor(num > 0 ? i : index.numRanked() - 1 - i);
+                    reply.append(new CompareNames<>(graph.nameOf(v), index.averageSeparation(v))).append("\n");
+                }
+            }
+            else{
+                reply.append("ERR invalid command\n");
+            }
+        }
+
+        /**
+         * Check that the session has a center, replying with an error if not
+         * @param reply Reply being built
+         * @return      true if there's a center
+         */
+        private boolean hasCenter(StringBuilder reply){
+            if(bfsResult != null) return true;
+            reply.append("ERR no center yet, use u <name>\n");
+            return false;
+        }
+    }
+
+    /**
+     * Name a command line is recorded under in the metrics
+     * @param line  Command line from the client
+     * @return      The command's letter(s), or "invalid" for an empty line
+     */
+    private static String commandName(String line){
+        if(line.isEmpty()) return "invalid";
+        if(line.startsWith("p2")) return "p2";
+        if(line.startsWith("stats")) return "stats";
+        //the line comes from a remote client, so every unknown letter shares one op instead of each getting its own MBean
+        return COMMANDS.indexOf(line.charAt(0)) != -1 ? line.substring(0, 1) : "invalid";
+    }
+
+    /**
+     * Look up an actor, replying with an error (and suggestions) if the name doesn't exist
+     * @param name  Name from the command
+     * @param reply Reply being built
+     * @return      Dense id of the actor, or -1 if there's no such actor
+     */
+    private int actor(String name, StringBuilder reply){
+        int v = graph.indexOf(name);
+        if(v == -1){
+            reply.append("ERR \"").append(name).append("\" doesn't exist in the graph");
+            List<String> suggestions = nameSearch.suggest(name, 5);
+            if(!suggestions.isEmpty()) reply.append("; did you mean: ").append(String.join(", ", suggestions)).append("?");
+            reply.append("\n");
+        }
+        return v;
+    }
+
+    /**
+     * The centrality index, computing (and saving) it the first time any session asks if there wasn't one on disk
+     * @return  Centrality index of the graph
+     */
+    private CentralityIndex centrality(){
+        CentralityIndex index = centrality;
+        if(index != null) return index;
+        //a lock rather than synchronized, so the sessions waiting out the compute don't pin their carrier threads
+        centralityLock.lock();
+        try{
+            if(centrality == null){
+                centrality = CentralityIndex.compute(graph, inputChecksum, null);
+                try{
+                    centrality.save(CentralityIndex.INDEX_FILE);
+                } catch (IOException e){
+                    System.err.println("Cannot save centrality index\n" + e.getMessage());
+                }
+            }
+            return centrality;
+        } finally {
+            centralityLock.unlock();
+        }
+    }
+
+    //getters for the server metrics
+    public int getSessions() { return sessions.get(); }
+    public long getQueries() { return queries.get(); }
+    public BFSCache getBfsCache() { return bfsCache; }
+
+    /**
+     * Run the server
+     * @param args  Optional port (defaults to DEFAULT_PORT)
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        KevinBacon kb = new KevinBacon();
+        long checksum = KevinBacon.inputChecksum();
+        kb.loadCompactGraph(checksum);
+        new BaconServer(kb.getCompactGraph(), checksum).serve(port);
+    }
+}
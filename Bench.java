@@ -0,0 +1,109 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.function.Supplier;
+
+/**
+ * Small timing harness shared by the benchmark drivers
+ * Runs an operation a few times to let the JIT warm up, then reports the average wall-clock time of the measured runs
+ */
+public class Bench {
+
+    /**
+     * Time an operation
+     * @param name      Label printed with the result
+     * @param warmups   Number of untimed runs first
+     * @param runs      Number of timed runs to average over
+     * @param op        Operation to time
+     * @return          Average milliseconds per run
+     */
+    public static double time(String name, int warmups, int runs, Runnable op){
+        for(int i = 0; i < warmups; i++) op.run();
+        long start = System.nanoTime();
+        for(int i = 0; i < runs; i++) op.run();
+        double ms = (System.nanoTime() - start) / 1e6 / runs;
+        System.out.printf("%-40s %12.3f ms/op%n", name, ms);
+        return ms;
+    }
+
+    /**
+     * Time an operation and count what it allocates, printing time per run, throughput and bytes allocated per run
+     * (allocation is counted on the calling thread only, so work handed to other threads doesn't show up)
+     * @param name      Label printed with the result
+     * @param warmups   Number of untimed runs first
+     * @param runs      Number of timed runs to average over
+     * @param op        Operation to measure
+     * @return          Average milliseconds per run
+     */
+    public static double measure(String name, int warmups, int runs, Runnable op){
+        for(int i = 0; i < warmups; i++) op.run();
+        long[] nanos = new long[1];
+        long bytes = allocatedBytes(() -> {
+            long start = System.nanoTime();
+            for(int i = 0; i < runs; i++) op.run();
+            nanos[0] = System.nanoTime() - start;
+        });
+        double ms = nanos[0] / 1e6 / runs;
+        System.out.printf("%-40s %12.3f ms/op %12.1f ops/s %12.1f KB/op%n", name, ms, 1000 / ms, bytes / 1e3 / runs);
+        return ms;
+    }
+
+    /**
+     * Heap an object takes up once it's built: live heap after a full GC with it, minus before it
+     * @param name  Label printed with the result
+     * @param build Builds the object
+     * @param <T>   Type of the object
+     * @return      The object (so it stays reachable until it's measured)
+     */
+    public static <T> T footprint(String name, Supplier<T> build){
+        long before = usedAfterGc();
+        T built = build.get();
+        long after = usedAfterGc();
+        System.out.printf("%-40s %12.1f MB retained%n", name, (after - before) / 1e6);
+        return built;
+    }
+
+    /**
+     * Heap in use after asking for a couple of full GCs
+     * @return  Used heap bytes
+     */
+    private static long usedAfterGc(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 2; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Peak heap used while an operation runs, from the JVM's memory pool peak counters
+     * (summed over the heap pools, so it's an upper bound when the peaks of different pools don't line up)
+     * @param name  Label printed with the result
+     * @param op    Operation to measure
+     * @return      Peak heap bytes used
+     */
+    public static long peakHeap(String name, Runnable op){
+        System.gc();
+        for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+        op.run();
+        long peak = 0;
+        for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        System.out.printf("%-40s %12.1f MB peak heap%n", name, peak / 1e6);
+        return peak;
+    }
+
+    /**
+     * Bytes allocated by the calling thread while an operation runs (so only meaningful for single-threaded work)
+     * @param op    Operation to measure
+     * @return      Bytes allocated on this thread
+     */
+    public static long allocatedBytes(Runnable op){
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        op.run();
+        return threads.getThreadAllocatedBytes(id) - before;
+    }
+}
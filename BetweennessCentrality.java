@@ -0,0 +1,260 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Betweenness centrality of every actor in the whole graph by Brandes' algorithm: for each source, one BFS counts the
+ * shortest paths to every actor, then a sweep back up the BFS order adds up how much each actor depends on the others
+ * Sources are spread across a ForkJoinPool; every worker thread keeps its own scratch and dependency arrays, and the
+ * per-thread totals are summed at the end. Sources can also be sampled to bound the runtime (the scores are then
+ * scaled up to estimate the exact ones)
+ */
+public class BetweennessCentrality {
+    private static final int GRAIN = 16;    //sources per leaf task
+    private static final Metrics.Op BETWEENNESS = Metrics.op("betweenness");
+
+    private final CompactActorGraph graph;  //graph to score
+    private final int parallelism;          //number of worker threads
+    private double[] centrality;    //actor -> betweenness (number of shortest paths between other pairs through it)
+    private int[] rankOf;           //actor -> its position by decreasing centrality (ties in id order)
+    private boolean sampled;        //whether the scores are estimates from a sample of sources
+
+    /**
+     * Per-thread scratch arrays for Brandes' algorithm
+     */
+    private static class Scratch {
+        final int[] dist, order;        //separation from the current source, and actors in BFS order
+        final double[] sigma, delta;    //number of shortest paths from the source, and dependency on each actor
+        final double[] total;           //this thread's running centrality totals
+        int count;                      //actors reached from the current source
+        long visited;                   //actors reached from all of this thread's sources
+
+        Scratch(int n){
+            dist = new int[n];
+            order = new int[n];
+            sigma = new double[n];
+            delta = new double[n];
+            total = new double[n];
+            Arrays.fill(dist, -1);
+        }
+    }
+
+    /**
+     * Construct a scorer that uses every core
+     * @param graph CSR graph to score
+     */
+    public BetweennessCentrality(CompactActorGraph graph){
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct a scorer with a set number of worker threads
+     * @param graph         CSR graph to score
+     * @param parallelism   Number of worker threads
+     */
+    public BetweennessCentrality(CompactActorGraph graph, int parallelism){
+        this.graph = graph;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Score every actor
+     * @param samples   Number of random sources to use, or 0 (or anything >= the number of actors) for the exact scores
+     * @param seed      Seed for picking the sampled sources
+     * @param progress  Called from the worker threads with the number of sources finished (roughly every 1%), or null
+     */
+    public void compute(int samples, long seed, IntConsumer progress){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        int n = graph.numVertices();
+        int[] sources;
+        sampled = samples > 0 && samples < n;
+        if(sampled){
+            //partial Fisher-Yates shuffle to pick distinct sources
+            int[] all = new int[n];
+            for(int v = 0; v < n; v++) all[v] = v;
+            Random random = new Random(seed);
+            for(int i = 0; i < samples; i++){
+                int j = i + random.nextInt(n - i);
+                int temp = all[i];
+                all[i] = all[j];
+                all[j] = temp;
+            }
+            sources = Arrays.copyOf(all, samples);
+        } else {
+            sources = new int[n];
+            for(int v = 0; v < n; v++) sources[v] = v;
+        }
+        //each worker thread gets its own scratch, and every scratch is kept so the totals can be summed
+        ConcurrentLinkedQueue<Scratch> scratches = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Scratch> local = ThreadLocal.withInitial(() -> {
+            Scratch scratch = new Scratch(n);
+            scratches.add(scratch);
+            return scratch;
+        });
+        AtomicInteger done = new AtomicInteger();
+        int step = Math.max(1, sources.length / 100);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new SourceTask(sources, 0, sources.length, local, done, step, progress));
+        } finally {
+            pool.shutdown();
+        }
+        //every undirected path was counted once from each end, and sampled sources stand in for all of them
+        double scale = 0.5 * (sampled ? (double) n / samples : 1);
+        centrality = new double[n];
+        long visited = 0;
+        for(Scratch scratch: scratches){
+            for(int v = 0; v < n; v++) centrality[v] += scratch.total[v];
+            visited += scratch.visited;
+        }
+        for(int v = 0; v < n; v++) centrality[v] *= scale;
+        rankOf = rank(centrality);
+        BETWEENNESS.record(start, allocated, visited);
+    }
+
+    /**
+     * Rank every actor by decreasing score without boxing: the scores are non-negative, so their raw bits order the
+     * same way they do, and a sorted primitive array of the negated bits gives each score the position of its first
+     * copy; actors with equal scores then take the following positions in id order
+     * @param scores    Non-negative score of every actor
+     * @return          Actor -> its rank (0 for the highest score)
+     */
+    private static int[] rank(double[] scores){
+        int n = scores.length;
+        long[] keys = new long[n];
+        for(int v = 0; v < n; v++) keys[v] = -Double.doubleToLongBits(scores[v] + 0.0);  //+ 0.0 turns -0.0 into 0.0
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int[] taken = new int[n];   //first position of a score -> actors with that score ranked so far
+        int[] rank = new int[n];
+        for(int v = 0; v < n; v++){
+            //leftmost copy of the key
+            int lo = 0, hi = n - 1;
+            while(lo < hi){
+                int mid = (lo + hi) >>> 1;
+                if(sorted[mid] < keys[v]) lo = mid + 1;
+                else hi = mid;
+            }
+            rank[v] = lo + taken[lo]++;
+        }
+        return rank;
+    }
+
+    /**
+     * Brandes' single-source step: count shortest paths by BFS, then push dependencies back up the BFS order
+     * @param source    Dense id of the source actor
+     * @param scratch   This thread's scratch arrays
+     */
+    private void accumulate(int source, Scratch scratch){
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraNext = graph.extraNext();
+        int[] dist = scratch.dist, order = scratch.order;
+        double[] sigma = scratch.sigma, delta = scratch.delta;
+        //only undo the entries the last source touched
+        for(int i = 0; i < scratch.count; i++){
+            int v = order[i];
+            dist[v] = -1;
+            sigma[v] = 0;
+            delta[v] = 0;
+        }
+        int head = 0, tail = 0;
+        order[tail++] = source;
+        dist[source] = 0;
+        sigma[source] = 1;
+        while(head < tail){
+            int v = order[head++];
+            for(int slot = offsets[v]; slot < offsets[v + 1]; slot++){
+                int w = neighbors[slot];
+                if(dist[w] == -1){
+                    dist[w] = dist[v] + 1;
+                    order[tail++] = w;
+                }
+                //every shortest path to v extends to a shortest path to w
+                if(dist[w] == dist[v] + 1) sigma[w] += sigma[v];
+            }
+            //then the same for any neighbors added since the CSR build
+            for(int link = extraHead[v]; link != -1; link = extraNext[link]){
+                int w = extraNeighbors[link];
+                if(dist[w] == -1){
+                    dist[w] = dist[v] + 1;
+                    order[tail++] = w;
+                }
+                if(dist[w] == dist[v] + 1) sigma[w] += sigma[v];
+            }
+        }
+        scratch.count = tail;
+        scratch.visited += tail;
+        //farthest actors first: v's dependency collects from every w that has v as a predecessor
+        for(int i = tail - 1; i > 0; i--){
+            int v = order[i];
+            double sum = 0;
+            for(int slot = offsets[v]; slot < offsets[v + 1]; slot++){
+                int w = neighbors[slot];
+                if(dist[w] == dist[v] + 1) sum += (1 + delta[w]) / sigma[w];
+            }
+            for(int link = extraHead[v]; link != -1; link = extraNext[link]){
+                int w = extraNeighbors[link];
+                if(dist[w] == dist[v] + 1) sum += (1 + delta[w]) / sigma[w];
+            }
+            delta[v] = sigma[v] * sum;
+            scratch.total[v] += delta[v];
+        }
+    }
+
+    //getters for the results of the last compute
+    public double[] getCentrality() { return centrality; }
+    public boolean isSampled() { return sampled; }
+    public double centrality(int v) { return centrality[v]; }
+    public int rankOf(int v) { return rankOf[v]; }
+
+    /**
+     * Most central actors, selected with a bounded heap instead of sorting everyone
+     * @param k Number of actors wanted
+     * @return  Up to k dense actor ids by decreasing centrality (ties in id order)
+     */
+    public int[] top(int k){
+        return TopK.select(centrality, k, true);
+    }
+
+    /**
+     * Fork/join task over a range of sources that splits in half until the range is GRAIN or smaller
+     */
+    @SuppressWarnings("serial")
+    private class SourceTask extends RecursiveAction {
+        private final int[] sources;
+        private final int lo, hi;   //sources[lo] ... sources[hi-1]
+        private final ThreadLocal<Scratch> local;
+        private final AtomicInteger done;
+        private final int step;
+        private final IntConsumer progress;
+
+        SourceTask(int[] sources, int lo, int hi, ThreadLocal<Scratch> local, AtomicInteger done, int step, IntConsumer progress){
+            this.sources = sources;
+            this.lo = lo;
+            this.hi = hi;
+            this.local = local;
+            this.done = done;
+            this.step = step;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > GRAIN){
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SourceTask(sources, lo, mid, local, done, step, progress), new SourceTask(sources, mid, hi, local, done, step, progress));
+                return;
+            }
+            Scratch scratch = local.get();
+            for(int i = lo; i < hi; i++){
+                accumulate(sources[i], scratch);
+                int finished = done.incrementAndGet();
+                if(progress != null && finished % step == 0) progress.accept(finished);
+            }
+        }
+    }
+}
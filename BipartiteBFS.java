@@ -0,0 +1,95 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reusable BFS over a BipartiteIndex: actor -> movie -> actor instead of over the actor x actor edges
+ * Every movie's cast is scanned once, by the first actor to reach it, so a whole search costs O(credits) however big
+ * the casts are, and the separations come out the same as BFSEngine's over the actor graph
+ * Results are ordinary BFSResults with no edge ids (parentEdge is all -1); the movies behind each step are worked out
+ * when they're printed, with label()
+ * Not thread-safe: give each thread its own engine
+ */
+public class BipartiteBFS {
+    private static final Metrics.Op BFS = Metrics.op("bipartite bfs");
+    private final BipartiteIndex index;     //index to search
+    private final BFSResult result;         //scratch result that every run overwrites
+    private final int[] movieStamp;         //movie -> number of the run that last scanned its cast
+    private int run;                        //number of the current run
+
+    /**
+     * Construct an engine (and its scratch arrays) for an index
+     * @param index Bipartite index to search
+     */
+    public BipartiteBFS(BipartiteIndex index){
+        this.index = index;
+        result = new BFSResult(index.numActors());
+        movieStamp = new int[index.numMovies()];
+    }
+
+    /**
+     * Run a BFS from a source actor
+     * The returned result is overwritten by the next call, so copy anything that needs to outlive it
+     * @param source    Dense id of the root actor
+     * @return          The engine's result, filled in for this source
+     */
+    public BFSResult run(int source){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        int[] parent = result.parent;
+        int[] depth = result.depth;
+        int[] queue = result.order;
+        //only undo the entries the last run touched instead of clearing whole arrays
+        for(int i = 0; i < result.count; i++){
+            int v = queue[i];
+            parent[v] = -1;
+            depth[v] = -1;
+        }
+        if(++run == 0){
+            //the counter wrapped around, so old stamps could look current
+            Arrays.fill(movieStamp, 0);
+            run = 1;
+        }
+        int[] filmOffsets = index.filmOffsets(), filmMovies = index.filmMovies();
+        int[] castOffsets = index.castOffsets(), castActors = index.castActors();
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        depth[source] = 0;
+        while(head < tail){
+            int curr = queue[head++];
+            int nextDepth = depth[curr] + 1;
+            for(int f = filmOffsets[curr]; f < filmOffsets[curr + 1]; f++){
+                int movie = filmMovies[f];
+                //the first actor out of the queue to reach a movie is one of the closest, so its cast only needs one look
+                if(movieStamp[movie] == run) continue;
+                movieStamp[movie] = run;
+                for(int c = castOffsets[movie]; c < castOffsets[movie + 1]; c++){
+                    int costar = castActors[c];
+                    if(depth[costar] == -1){
+                        depth[costar] = nextDepth;
+                        parent[costar] = curr;
+                        queue[tail++] = costar;
+                    }
+                }
+            }
+        }
+        result.source = source;
+        result.count = tail;
+        BFS.record(start, allocated, tail);
+        return result;
+    }
+
+    /**
+     * Movies behind one step of a BFS result: the ones an actor shares with their parent
+     * @param graph     Graph with the movie names
+     * @param result    BFS result from run (or a copy of one)
+     * @param v         Dense id of a reached actor other than the source
+     * @return          Names of the movies v shares with parent[v]
+     */
+    public Set<String> label(CompactActorGraph graph, BFSResult result, int v){
+        Set<String> movies = new HashSet<>();
+        for(int movie: index.sharedMovies(v, result.parent[v])) movies.add(graph.movieName(movie));
+        return movies;
+    }
+
+    public BipartiteIndex getIndex() { return index; }
+}
@@ -0,0 +1,189 @@
+import java.util.Arrays;
+
+/**
+ * Bipartite actor-movie index: every movie's cast and every actor's filmography as primitive adjacency in both
+ * directions, with one entry per credit instead of one per pair of co-stars
+ * Answers filmography, cast and co-star questions directly, and BipartiteBFS searches it without the actor x actor
+ * edges, so memory stays linear in the credits even when ensemble casts would make the pair graph blow up
+ * Shared movies (the actor graph's edge labels) are worked out on demand by intersecting two filmographies
+ */
+public class BipartiteIndex {
+    private static final int GALLOP_RATIO = 32;  //intersect by binary search once one list is this many times longer
+
+    private final int numActors;
+    private final int numMovies;
+    private final int[] castOffsets;    //cast of movie m is castActors[castOffsets[m]] ... castActors[castOffsets[m+1]-1]
+    private final int[] castActors;     //every movie's cast, sorted ascending
+    private final int[] filmOffsets;    //movies of actor v are filmMovies[filmOffsets[v]] ... filmMovies[filmOffsets[v+1]-1]
+    private final int[] filmMovies;     //every actor's filmography, sorted ascending
+
+    /**
+     * Construct the index from the casts, working out the filmographies by transposing them
+     * @param numActors     Number of dense actor ids
+     * @param castOffsets   Movie m's cast is castActors[castOffsets[m]] ... castActors[castOffsets[m+1]-1]
+     * @param castActors    Every movie's cast, sorted ascending with repeats dropped (kept, not copied)
+     */
+    public BipartiteIndex(int numActors, int[] castOffsets, int[] castActors){
+        this.numActors = numActors;
+        this.numMovies = castOffsets.length - 1;
+        this.castOffsets = castOffsets;
+        this.castActors = castActors;
+        //counting sort of the credits by actor; going through the movies in order leaves every filmography sorted
+        int credits = castOffsets[numMovies];
+        filmOffsets = new int[numActors + 1];
+        for(int i = 0; i < credits; i++) filmOffsets[castActors[i] + 1]++;
+        for(int v = 0; v < numActors; v++) filmOffsets[v + 1] += filmOffsets[v];
+        filmMovies = new int[credits];
+        int[] fill = Arrays.copyOf(filmOffsets, numActors);
+        for(int m = 0; m < numMovies; m++){
+            for(int i = castOffsets[m]; i < castOffsets[m + 1]; i++) filmMovies[fill[castActors[i]]++] = m;
+        }
+    }
+
+    /**
+     * Build the index straight from (movie, actor) credits, without ever making the actor graph
+     * @param numActors     Number of dense actor ids
+     * @param numMovies     Number of dense movie ids
+     * @param creditMovies  Dense movie id of each credit
+     * @param creditActors  Dense actor id of each credit
+     * @param numCredits    Number of credits in the two arrays
+     * @return              The index
+     */
+    public static BipartiteIndex fromCredits(int numActors, int numMovies, int[] creditMovies, int[] creditActors, int numCredits){
+        //EdgeBuilder groups and sorts the casts in its constructor; only its build step makes the pairs
+        EdgeBuilder casts = new EdgeBuilder(numMovies, creditMovies, creditActors, numCredits);
+        return new BipartiteIndex(numActors, casts.getCastOffsets(), casts.getCastActors());
+    }
+
+    /**
+     * Build the index for a graph, sharing its cast arrays when nothing has been added to it since it was built
+     * @param graph CSR graph
+     * @return      The index, covering any added actors, movies and credits too
+     */
+    public static BipartiteIndex of(CompactActorGraph graph){
+        int n = graph.numVertices(), numMovies = graph.numMovies();
+        int[] castOffsets = graph.castOffsets(), castActors = graph.castActors();
+        if(!graph.hasAddedCredits() && castOffsets.length == numMovies + 1) return new BipartiteIndex(n, castOffsets, castActors);
+        //merge the added credits into each movie's cast
+        IntList merged = new IntList(castActors.length);
+        int[] offsets = new int[numMovies + 1];
+        for(int m = 0; m < numMovies; m++){
+            int start = merged.size();
+            if(m < castOffsets.length - 1){
+                for(int i = castOffsets[m]; i < castOffsets[m + 1]; i++) merged.add(castActors[i]);
+            }
+            IntList extra = graph.addedCast(m);
+            if(extra != null){
+                for(int i = 0; i < extra.size(); i++) merged.add(extra.get(i));
+            }
+            Arrays.sort(merged.array(), start, merged.size());
+            offsets[m + 1] = merged.size();
+        }
+        return new BipartiteIndex(n, offsets, Arrays.copyOf(merged.array(), merged.size()));
+    }
+
+    //standard getters (the arrays are shared, so don't modify them)
+    public int numActors() { return numActors; }
+    public int numMovies() { return numMovies; }
+    public int numCredits() { return filmMovies.length; }
+    public int[] castOffsets() { return castOffsets; }
+    public int[] castActors() { return castActors; }
+    public int[] filmOffsets() { return filmOffsets; }
+    public int[] filmMovies() { return filmMovies; }
+    public int castSize(int movie) { return castOffsets[movie + 1] - castOffsets[movie]; }
+    public int filmCount(int actor) { return filmOffsets[actor + 1] - filmOffsets[actor]; }
+
+    /**
+     * Every movie an actor appeared in
+     * @param actor Dense actor id
+     * @return      Dense movie ids, ascending
+     */
+    public int[] filmography(int actor){
+        return Arrays.copyOfRange(filmMovies, filmOffsets[actor], filmOffsets[actor + 1]);
+    }
+
+    /**
+     * Everybody who appeared in a movie
+     * @param movie Dense movie id
+     * @return      Dense actor ids, ascending
+     */
+    public int[] cast(int movie){
+        return Arrays.copyOfRange(castActors, castOffsets[movie], castOffsets[movie + 1]);
+    }
+
+    /**
+     * Movies two actors both appeared in (the label of the edge between them in the actor graph)
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  Dense movie ids, ascending (empty if they never co-starred)
+     */
+    public int[] sharedMovies(int a, int b){
+        IntList shared = new IntList(4);
+        intersect(a, b, shared);
+        return Arrays.copyOf(shared.array(), shared.size());
+    }
+
+    /**
+     * Whether two actors were ever in the same movie
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  true if they share at least one movie
+     */
+    public boolean coStarred(int a, int b){
+        return a != b && intersect(a, b, null);
+    }
+
+    /**
+     * Intersect two filmographies: a linear merge when they're about the same length, and a binary search of the
+     * longer one for each movie of the shorter one when one actor has far more movies than the other
+     * @param a         Dense id of one actor
+     * @param b         Dense id of the other actor
+     * @param shared    Where to put the shared movies, or null to stop at the first one
+     * @return          true if they share any movie
+     */
+    private boolean intersect(int a, int b, IntList shared){
+        int i = filmOffsets[a], iEnd = filmOffsets[a + 1];
+        int j = filmOffsets[b], jEnd = filmOffsets[b + 1];
+        if(iEnd - i > jEnd - j){
+            //make a the actor with fewer movies
+            int t = i; i = j; j = t;
+            t = iEnd; iEnd = jEnd; jEnd = t;
+        }
+        boolean found = false;
+        if((long) (iEnd - i) * GALLOP_RATIO < jEnd - j){
+            for(; i < iEnd; i++){
+                int k = Arrays.binarySearch(filmMovies, j, jEnd, filmMovies[i]);
+                if(k >= 0){
+                    if(shared == null) return true;
+                    shared.add(filmMovies[i]);
+                    found = true;
+                    j = k + 1;
+                } else {
+                    j = -k - 1;
+                }
+            }
+            return found;
+        }
+        while(i < iEnd && j < jEnd){
+            int x = filmMovies[i], y = filmMovies[j];
+            if(x < y) i++;
+            else if(x > y) j++;
+            else {
+                if(shared == null) return true;
+                shared.add(x);
+                found = true;
+                i++;
+                j++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Rough heap footprint of the index, to compare with the actor graph's
+     * @return  Bytes used by the arrays
+     */
+    public long sizeInBytes(){
+        return 4L * (castOffsets.length + castActors.length + filmOffsets.length + filmMovies.length);
+    }
+}
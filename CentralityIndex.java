@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Binary index of every actor's average separation, reachable count and eccentricity, plus the 'c' ranking order,
+ * saved to disk so the all-sources BFS only has to run again when the input files change
+ * The file is memory-mapped and read in place, so loading it costs the same no matter how many actors it ranks
+ *
+ * Layout (big-endian): int magic, int version, long checksum of the input files, int numActors, int numRanked,
+ * then double[numActors] average separation, int[numActors] reachable, int[numActors] eccentricity,
+ * int[numRanked] actor ids in non-decreasing average separation order
+ */
+public class CentralityIndex {
+    static final String INDEX_FILE = "bacon/centrality.idx";   //default place to keep the index
+    private static final int MAGIC = 0x42434958;    //"BCIX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final Metrics.Op CENTRALITY = Metrics.op("centrality");
+
+    private final ByteBuffer data;  //the whole index, either memory-mapped or freshly computed on heap
+    private final int numActors;    //number of actors the index covers
+    private final int numRanked;    //number of actors with a non-zero average separation
+    private final int reachableAt, eccentricityAt, orderAt; //byte offsets of each section
+
+    /**
+     * Construct an index over a buffer that holds the whole file layout
+     * @param data  Buffer positioned anywhere; absolute reads are used throughout
+     */
+    private CentralityIndex(ByteBuffer data){
+        this.data = data;
+        numActors = data.getInt(16);
+        numRanked = data.getInt(20);
+        reachableAt = HEADER_BYTES + 8 * numActors;
+        eccentricityAt = reachableAt + 4 * numActors;
+        orderAt = eccentricityAt + 4 * numActors;
+    }
+
+    /**
+     * Memory-map a saved index, as long as it was built from the current input files
+     * @param path          Index file
+     * @param checksum      Checksum of the current input files (KevinBacon.inputChecksum)
+     * @param numActors     Number of actors in the current graph
+     * @return              The index, or null if it's missing, unreadable or stale
+     */
+    public static CentralityIndex load(String path, long checksum, int numActors){
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            if(channel.size() < HEADER_BYTES) return null;
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            //the mapping stays valid after the channel is closed
+            if(data.getInt(0) != MAGIC || data.getInt(4) != VERSION || data.getLong(8) != checksum || data.getInt(16) != numActors) return null;
+            CentralityIndex index = new CentralityIndex(data);
+            if(channel.size() != index.orderAt + 4L * index.numRanked) return null;
+            return index;
+        } catch (NoSuchFileException e){
+            return null;
+        } catch (IOException e){
+            System.err.println("Cannot read centrality index "+path+"\n"+e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compute the index by running SeparationRanking over the whole graph
+     * @param graph     CSR graph built from the input files
+     * @param checksum  Checksum of the input files the graph came from
+     * @param progress  Progress callback passed on to SeparationRanking (or null)
+     * @return          The freshly computed (unsaved) index
+     */
+    public static CentralityIndex compute(CompactActorGraph graph, long checksum, IntConsumer progress){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        SeparationRanking ranking = new SeparationRanking(graph);
+        ranking.run(progress);
+        int n = graph.numVertices();
+        int[] order = ranking.rankedOrder();
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + 16 * n + 4 * order.length);
+        data.putInt(MAGIC).putInt(VERSION).putLong(checksum).putInt(n).putInt(order.length);
+        for(double separation: ranking.getAverageSeparation()) data.putDouble(separation);
+        long visited = 0;
+        for(int count: ranking.getReachable()){
+            data.putInt(count);
+            visited += count;
+        }
+        for(int ecc: ranking.getEccentricity()) data.putInt(ecc);
+        for(int v: order) data.putInt(v);
+        data.flip();
+        CENTRALITY.record(start, allocated, visited);
+        return new CentralityIndex(data);
+    }
+
+    /**
+     * Write the index out so the next session can map it instead of recomputing
+     * @param path  File to write (replaced if it exists)
+     */
+    public void save(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer out = data.duplicate();
+            out.position(0);
+            while(out.hasRemaining()) channel.write(out);
+        }
+    }
+
+    //getters that read straight out of the buffer
+    public int numActors() { return numActors; }
+    public int numRanked() { return numRanked; }
+    public double averageSeparation(int v) { return data.getDouble(HEADER_BYTES + 8 * v); }
+    public int reachable(int v) { return data.getInt(reachableAt + 4 * v); }
+    public int eccentricity(int v) { return data.getInt(eccentricityAt + 4 * v); }
+
+    /**
+     * Actor at a position in the ranking
+     * @param rank  0 is the best center (lowest average separation), numRanked()-1 the worst
+     * @return      Dense actor id
+     */
+    public int rankedActor(int rank) { return data.getInt(orderAt + 4 * rank); }
+}
@@ -0,0 +1,435 @@
+import java.util.*;
+
+/**
+ * Compressed-sparse-row (CSR) version of the main actor graph
+ * Actors are dense int ids and every undirected edge stores its shared movies as an offset range into one shared
+ * array of movie ids, so the whole graph is a handful of int arrays instead of nested hash maps of Strings
+ * Implements Graph so GraphLibBacon can run on it unchanged, and exposes the raw arrays for primitive fast paths
+ *
+ * The CSR arrays are built once, but new actors, movies and credits can be added afterwards (see DeltaLoader): edges
+ * they create go in a small overlay, chained per actor, that the primitive fast paths walk after each CSR neighbor
+ * list. Adding isn't safe while other threads are reading
+ */
+public class CompactActorGraph implements Graph<String, Set<String>> {
+    private final NameDictionary actorNames;    //dense actor id <-> actor name
+    private final NameDictionary movieNames;    //dense movie id <-> movie name
+    private int[] offsets;              //neighbors of actor v live in neighbors[offsets[v]] ... neighbors[offsets[v+1]-1] (has spare room at the end for added actors)
+    private final int[] neighbors;      //all neighbor lists back to back, each one sorted ascending
+    private final int[] edgeIds;        //edge slot -> undirected edge id (both directions of an edge share one id)
+    private final int[] labelOffsets;   //movies shared along edge e live in labelMovies[labelOffsets[e]] ... labelMovies[labelOffsets[e+1]-1]
+    private final int[] labelMovies;    //shared array of dense movie ids for every edge label
+    private final int[] castOffsets;    //cast of movie m is castActors[castOffsets[m]] ... castActors[castOffsets[m+1]-1]
+    private final int[] castActors;     //every movie's cast, sorted ascending
+    private final int baseEdges;        //number of edges in the CSR arrays
+    private int numEdges;               //number of undirected edges, added ones included
+
+    //overlay of edges added after the CSR build: actor v's added neighbors are the chain extraNeighbors[link] for
+    //link = extraHead[v], extraNext[link], ... until -1
+    private int[] extraHead;
+    private final IntList extraNeighbors = new IntList(), extraEdgeIds = new IntList(), extraNext = new IntList();
+    private int[] extraDegree;          //actor -> number of added neighbors
+    private final LongIntHashMap extraEdges = new LongIntHashMap(16);      //packed pair of an added edge -> its edge id
+    private final HashMap<Integer, IntList> extraLabels = new HashMap<>(); //edge id -> movies added to its label
+    private final HashMap<Integer, IntList> extraCasts = new HashMap<>();  //movie id -> actors added to its cast
+
+    /**
+     * Construct the CSR graph from an edge list
+     * @param actorNames    Dictionary of actor names (dense actor id = name id)
+     * @param movieNames    Dictionary of movie names (dense movie id = name id)
+     * @param edgeKeys      Undirected edges packed as (smaller id << 32 | larger id), sorted ascending
+     * @param labelOffsets  Edge i's movies are labelMovies[labelOffsets[i]] ... labelMovies[labelOffsets[i+1]-1]
+     * @param labelMovies   Shared array of dense movie ids
+     * @param castOffsets   Movie m's cast is castActors[castOffsets[m]] ... castActors[castOffsets[m+1]-1]
+     * @param castActors    Every movie's cast, sorted ascending with repeats dropped
+     */
+    public CompactActorGraph(NameDictionary actorNames, NameDictionary movieNames, long[] edgeKeys, int[] labelOffsets, int[] labelMovies,
+                             int[] castOffsets, int[] castActors){
+        this.actorNames = actorNames;
+        this.movieNames = movieNames;
+        this.labelOffsets = labelOffsets;
+        this.labelMovies = labelMovies;
+        this.castOffsets = castOffsets;
+        this.castActors = castActors;
+        baseEdges = numEdges = edgeKeys.length;
+        int n = actorNames.size();
+        extraHead = new int[n + 1];
+        Arrays.fill(extraHead, -1);
+        extraDegree = new int[n + 1];
+        //count the degree of every actor, then turn the counts into starting offsets
+        offsets = new int[n + 1];
+        for(long key: edgeKeys){
+            offsets[(int)(key >>> 32) + 1]++;
+            offsets[(int)key + 1]++;
+        }
+        for(int v = 0; v < n; v++){
+            offsets[v + 1] += offsets[v];
+        }
+        //fill both directions of every edge; since the keys are sorted, every neighbor list comes out sorted too
+        neighbors = new int[2 * edgeKeys.length];
+        edgeIds = new int[2 * edgeKeys.length];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for(int e = 0; e < edgeKeys.length; e++){
+            int a = (int)(edgeKeys[e] >>> 32);
+            int b = (int)edgeKeys[e];
+            neighbors[fill[a]] = b;
+            edgeIds[fill[a]++] = e;
+            neighbors[fill[b]] = a;
+            edgeIds[fill[b]++] = e;
+        }
+    }
+
+    /**
+     * Construct the graph from its finished CSR arrays (as written out by a GraphSnapshot), so nothing is rebuilt
+     * @param actorNames    Dictionary of actor names (dense actor id = name id)
+     * @param movieNames    Dictionary of movie names (dense movie id = name id)
+     * @param offsets       Actor v's neighbors are neighbors[offsets[v]] ... neighbors[offsets[v+1]-1] (length numActors + 1)
+     * @param neighbors     All neighbor lists back to back, each one sorted ascending
+     * @param edgeIds       Edge slot -> undirected edge id
+     * @param labelOffsets  Edge i's movies are labelMovies[labelOffsets[i]] ... labelMovies[labelOffsets[i+1]-1]
+     * @param labelMovies   Shared array of dense movie ids
+     * @param castOffsets   Movie m's cast is castActors[castOffsets[m]] ... castActors[castOffsets[m+1]-1]
+     * @param castActors    Every movie's cast, sorted ascending with repeats dropped
+     */
+    public CompactActorGraph(NameDictionary actorNames, NameDictionary movieNames, int[] offsets, int[] neighbors, int[] edgeIds,
+                             int[] labelOffsets, int[] labelMovies, int[] castOffsets, int[] castActors){
+        this.actorNames = actorNames;
+        this.movieNames = movieNames;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.edgeIds = edgeIds;
+        this.labelOffsets = labelOffsets;
+        this.labelMovies = labelMovies;
+        this.castOffsets = castOffsets;
+        this.castActors = castActors;
+        baseEdges = numEdges = labelOffsets.length - 1;
+        extraHead = new int[offsets.length];
+        Arrays.fill(extraHead, -1);
+        extraDegree = new int[offsets.length];
+    }
+
+    /**
+     * Build the graph straight from (movie, actor) credits, the same way KevinBacon.createGraph does for the map graph:
+     * every pair of actors who share a movie gets an edge labelled with all of their shared movies
+     * @param actorNames    Dictionary of actor names (dense actor id = name id)
+     * @param movieNames    Dictionary of movie names (dense movie id = name id)
+     * @param creditMovies  Dense movie id of each credit
+     * @param creditActors  Dense actor id of each credit
+     * @param numCredits    Number of credits in the two arrays
+     * @return              The CSR graph
+     */
+    public static CompactActorGraph fromCredits(NameDictionary actorNames, NameDictionary movieNames, int[] creditMovies, int[] creditActors, int numCredits){
+        EdgeBuilder edges = new EdgeBuilder(movieNames.size(), creditMovies, creditActors, numCredits);
+        edges.build(Runtime.getRuntime().availableProcessors());
+        return new CompactActorGraph(actorNames, movieNames, edges.getEdgeKeys(), edges.getLabelOffsets(), edges.getLabelMovies(),
+                edges.getCastOffsets(), edges.getCastActors());
+    }
+
+    /**
+     * Dense id of an actor, for the primitive fast paths
+     * @param name  Actor name
+     * @return      Dense actor id, or -1 if the actor isn't in the graph
+     */
+    public int indexOf(String name){
+        return actorNames.idOf(name);
+    }
+
+    /**
+     * Dense id of a movie
+     * @param name  Movie name
+     * @return      Dense movie id, or -1 if the movie isn't in the graph
+     */
+    public int movieIndexOf(String name){
+        return movieNames.idOf(name);
+    }
+
+    /**
+     * Dense id of an actor for the Graph methods
+     * Like AdjacencyMapGraph, asking about a vertex that doesn't exist throws a NullPointerException (callers rely on it)
+     * @param name  Actor name
+     * @return      Dense actor id
+     */
+    private int index(String name){
+        int v = actorNames.idOf(name);
+        if(v == -1) throw new NullPointerException("No vertex " + name);
+        return v;
+    }
+
+    //standard getters for the primitive fast paths (the arrays are shared, so don't modify them)
+    public String nameOf(int v) { return actorNames.name(v); }
+    public String movieName(int movie) { return movieNames.name(movie); }
+    public int numMovies() { return movieNames.size(); }
+    public NameDictionary getActorNames() { return actorNames; }
+    public NameDictionary getMovieNames() { return movieNames; }
+    public int degree(int v) { return offsets[v + 1] - offsets[v] + extraDegree[v]; }
+    public int[] offsets() { return offsets; }
+    public int[] neighbors() { return neighbors; }
+    public int[] edgeIds() { return edgeIds; }
+    public int[] labelOffsets() { return labelOffsets; }
+    public int[] labelMovies() { return labelMovies; }
+    public int[] castOffsets() { return castOffsets; }
+    public int[] castActors() { return castActors; }
+    public int numBaseEdges() { return baseEdges; }
+
+    //getters for the overlay of added edges (re-fetch them after adding anything, since they grow)
+    public int[] extraHead() { return extraHead; }
+    public int[] extraNeighbors() { return extraNeighbors.array(); }
+    public int[] extraEdgeIds() { return extraEdgeIds.array(); }
+    public int[] extraNext() { return extraNext.array(); }
+    public boolean hasExtras() { return numEdges > baseEdges; }
+    public boolean hasAddedCredits() { return !extraCasts.isEmpty(); }
+
+    /**
+     * Actors added to a movie's cast since the CSR build
+     * @param movie Dense movie id
+     * @return      The added actors, in the order they were added, or null if there are none
+     */
+    public IntList addedCast(int movie){
+        return extraCasts.get(movie);
+    }
+
+    /**
+     * Find the edge slot of v in u's neighbor list with a binary search
+     * @param u Dense id of one end
+     * @param v Dense id of the other end
+     * @return  Slot index into neighbors/edgeIds, or -1 if there's no such edge
+     */
+    public int slotOf(int u, int v){
+        int slot = Arrays.binarySearch(neighbors, offsets[u], offsets[u + 1], v);
+        return slot < 0 ? -1 : slot;
+    }
+
+    /**
+     * Find the edge between two actors, whether it's in the CSR arrays or was added later
+     * @param u Dense id of one end
+     * @param v Dense id of the other end
+     * @return  Undirected edge id, or -1 if there's no such edge
+     */
+    public int edgeOf(int u, int v){
+        int slot = slotOf(u, v);
+        if(slot != -1) return edgeIds[slot];
+        return numEdges == baseEdges ? -1 : extraEdges.get(pairKey(u, v), -1);
+    }
+
+    /**
+     * Pack an unordered pair of actors the same way EdgeBuilder does
+     * @param u Dense id of one actor
+     * @param v Dense id of the other actor
+     * @return  smaller id << 32 | larger id
+     */
+    private static long pairKey(int u, int v){
+        return u < v ? (long) u << 32 | v : (long) v << 32 | u;
+    }
+
+    /**
+     * Add an actor (or find it, if an actor with that name is already in the graph, the same way loading merges them)
+     * @param name  Actor name
+     * @return      Dense id of the actor
+     */
+    public int addActor(String name){
+        int v = actorNames.add(name);
+        int n = actorNames.size();
+        if(n + 1 > offsets.length){
+            //grow with room to spare so adding many actors stays cheap
+            int capacity = Math.max(n + 1, 2 * offsets.length);
+            int old = offsets.length;
+            offsets = Arrays.copyOf(offsets, capacity);
+            Arrays.fill(offsets, old, capacity, offsets[old - 1]);
+            extraHead = Arrays.copyOf(extraHead, capacity);
+            Arrays.fill(extraHead, old, capacity, -1);
+            extraDegree = Arrays.copyOf(extraDegree, capacity);
+        }
+        return v;
+    }
+
+    /**
+     * Add a movie (or find it, if a movie with that name is already in the graph)
+     * @param name  Movie name
+     * @return      Dense id of the movie
+     */
+    public int addMovie(String name){
+        return movieNames.add(name);
+    }
+
+    /**
+     * Add a credit: the actor gets an edge to (or a new movie on the existing edge with) everyone in the movie's cast
+     * @param movie     Dense movie id
+     * @param actor     Dense actor id
+     * @param newEdges  Every edge this creates is appended as (actor, other actor, edge id)
+     * @return          false if the actor was already in the movie's cast
+     */
+    public boolean addCredit(int movie, int actor, IntList newEdges){
+        boolean baseMovie = movie < castOffsets.length - 1;
+        //a repeated credit adds nothing (and doesn't leave an empty overlay cast behind)
+        if(baseMovie && Arrays.binarySearch(castActors, castOffsets[movie], castOffsets[movie + 1], actor) >= 0) return false;
+        IntList extraCast = extraCasts.get(movie);
+        if(extraCast != null){
+            for(int i = 0; i < extraCast.size(); i++){
+                if(extraCast.get(i) == actor) return false;
+            }
+        } else {
+            extraCast = new IntList(4);
+            extraCasts.put(movie, extraCast);
+        }
+        if(baseMovie){
+            for(int i = castOffsets[movie]; i < castOffsets[movie + 1]; i++) addLabel(actor, castActors[i], movie, newEdges);
+        }
+        for(int i = 0; i < extraCast.size(); i++) addLabel(actor, extraCast.get(i), movie, newEdges);
+        extraCast.add(actor);
+        return true;
+    }
+
+    /**
+     * Put a movie on the label of the edge between two actors, adding the edge to the overlay if there isn't one
+     * @param u         Dense id of one actor
+     * @param v         Dense id of the other actor
+     * @param movie     Dense id of the movie they share
+     * @param newEdges  A new edge is appended as (u, v, edge id)
+     */
+    private void addLabel(int u, int v, int movie, IntList newEdges){
+        int edge = edgeOf(u, v);
+        if(edge == -1){
+            edge = numEdges++;
+            extraEdges.put(pairKey(u, v), edge);
+            link(u, v, edge);
+            link(v, u, edge);
+            newEdges.add(u);
+            newEdges.add(v);
+            newEdges.add(edge);
+        }
+        extraLabels.computeIfAbsent(edge, e -> new IntList(2)).add(movie);
+    }
+
+    /**
+     * Chain an added neighbor onto an actor's overlay list
+     * @param u     Dense id of the actor
+     * @param v     Dense id of the new neighbor
+     * @param edge  Edge id between them
+     */
+    private void link(int u, int v, int edge){
+        extraNeighbors.add(v);
+        extraEdgeIds.add(edge);
+        extraNext.add(extraHead[u]);
+        extraHead[u] = extraNeighbors.size() - 1;
+        extraDegree[u]++;
+    }
+
+    /**
+     * Resolve an edge label into movie names (only done when a label is actually asked for)
+     * @param edge  Undirected edge id
+     * @return      Set of the movie names shared along that edge
+     */
+    public Set<String> movieLabel(int edge){
+        Set<String> movies = new HashSet<>();
+        if(edge < baseEdges){
+            for(int i = labelOffsets[edge]; i < labelOffsets[edge + 1]; i++){
+                movies.add(movieNames.name(labelMovies[i]));
+            }
+        }
+        IntList extra = extraLabels.get(edge);
+        if(extra != null){
+            for(int i = 0; i < extra.size(); i++) movies.add(movieNames.name(extra.get(i)));
+        }
+        return movies;
+    }
+
+    /**
+     * Iterable view over one neighbor list that hands out actor names
+     * @param v Dense actor id
+     * @return  Names of v's neighbors
+     */
+    private Iterable<String> neighborNames(int v){
+        return () -> new Iterator<String>() {
+            private int slot = offsets[v];
+            private int link = extraHead[v];   //then the added neighbors
+            @Override
+            public boolean hasNext() { return slot < offsets[v + 1] || link != -1; }
+            @Override
+            public String next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                if(slot < offsets[v + 1]) return actorNames.name(neighbors[slot++]);
+                int neighbor = extraNeighbors.get(link);
+                link = extraNext.get(link);
+                return actorNames.name(neighbor);
+            }
+        };
+    }
+
+    @Override
+    public int numVertices() { return actorNames.size(); }
+
+    @Override
+    public int numEdges() { return 2 * numEdges; }  //counted in both directions, same as AdjacencyMapGraph
+
+    @Override
+    public Iterable<String> vertices() {
+        //decode each name as the iteration reaches it
+        return () -> new Iterator<String>() {
+            private int v = 0;
+            @Override
+            public boolean hasNext() { return v < actorNames.size(); }
+            @Override
+            public String next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                return actorNames.name(v++);
+            }
+        };
+    }
+
+    @Override
+    public boolean hasVertex(String v) { return actorNames.idOf(v) != -1; }
+
+    @Override
+    public boolean hasEdge(String u, String v) {
+        int to = indexOf(v);
+        return to != -1 && edgeOf(index(u), to) != -1;
+    }
+
+    @Override
+    public Set<String> getLabel(String u, String v) {
+        int to = indexOf(v);
+        int edge = to == -1 ? -1 : edgeOf(index(u), to);
+        if(edge == -1) return null;
+        return movieLabel(edge);
+    }
+
+    @Override
+    public int outDegree(String v) { return degree(index(v)); }
+
+    @Override
+    public int inDegree(String v) { return degree(index(v)); }
+
+    @Override
+    public Iterable<String> outNeighbors(String v) { return neighborNames(index(v)); }
+
+    @Override
+    public Iterable<String> inNeighbors(String v) { return neighborNames(index(v)); }
+
+    //the CSR arrays are built once, additions go through addActor/addMovie/addCredit and nothing is ever removed, so the
+    //Graph mutators don't work
+    @Override
+    public void insertVertex(String v) { throw new UnsupportedOperationException("Add to a CompactActorGraph with addActor, addMovie and addCredit"); }
+
+    @Override
+    public void insertDirected(String u, String v, Set<String> e) { throw new UnsupportedOperationException("Add to a CompactActorGraph with addActor, addMovie and addCredit"); }
+
+    @Override
+    public void insertUndirected(String u, String v, Set<String> e) { throw new UnsupportedOperationException("Add to a CompactActorGraph with addActor, addMovie and addCredit"); }
+
+    @Override
+    public void removeVertex(String v) { throw new UnsupportedOperationException("CompactActorGraph doesn't support removals"); }
+
+    @Override
+    public void removeDirected(String u, String v) { throw new UnsupportedOperationException("CompactActorGraph doesn't support removals"); }
+
+    @Override
+    public void removeUndirected(String u, String v) { throw new UnsupportedOperationException("CompactActorGraph doesn't support removals"); }
+
+    /**
+     * Short summary instead of dumping every edge
+     * @return  String with the vertex, edge and movie counts
+     */
+    @Override
+    public String toString() {
+        return "CompactActorGraph: " + numVertices() + " actors, " + numEdges + " edges, " + numMovies() + " movies";
+    }
+}
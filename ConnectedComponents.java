@@ -0,0 +1,125 @@
+import java.util.Arrays;
+
+/**
+ * Connected components of the actor graph, built with union-find in one sweep over the edges
+ * Gives every actor a component id (the id of its component's root actor) and keeps each component's size, so
+ * "is X connected to the center" and "how many actors can the center reach" are lookups instead of searches
+ */
+public class ConnectedComponents {
+    private int[] parent;       //union-find forest: actor -> parent actor, roots point at themselves
+    private int[] size;         //root actor -> number of actors in its component
+    private int numComponents;  //number of separate components
+
+    /**
+     * Label the components of a graph
+     * @param graph CSR graph to label
+     */
+    public ConnectedComponents(CompactActorGraph graph){
+        int n = graph.numVertices();
+        parent = new int[n];
+        size = new int[n];
+        for(int v = 0; v < n; v++){
+            parent[v] = v;
+            size[v] = 1;
+        }
+        numComponents = n;
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraNext = graph.extraNext();
+        for(int u = 0; u < n; u++){
+            for(int slot = offsets[u]; slot < offsets[u + 1]; slot++){
+                //each undirected edge shows up twice, only union it from the smaller end
+                if(u < neighbors[slot]) union(u, neighbors[slot]);
+            }
+            for(int link = extraHead[u]; link != -1; link = extraNext[link]){
+                if(u < extraNeighbors[link]) union(u, extraNeighbors[link]);
+            }
+        }
+        //point every actor straight at its root, so lookups after this don't have to walk the forest
+        for(int v = 0; v < n; v++) parent[v] = componentOf(v);
+    }
+
+    /**
+     * Component id of an actor
+     * @param v Dense actor id
+     * @return  Id of the root actor of v's component
+     */
+    public int componentOf(int v){
+        while(parent[v] != v){
+            //path halving: skip every other link on the way up
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    /**
+     * Merge the components of two actors (union by size)
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  true if they were in different components before
+     */
+    public boolean union(int a, int b){
+        int ra = componentOf(a), rb = componentOf(b);
+        if(ra == rb) return false;
+        if(size[ra] < size[rb]){
+            int temp = ra;
+            ra = rb;
+            rb = temp;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        numComponents--;
+        return true;
+    }
+
+    /**
+     * Bring the components up to date after actors and edges were added to the graph: new actors start out alone,
+     * then each new edge merges two components (nothing is relabelled from scratch)
+     * @param numVertices   Number of actors in the graph now
+     * @param newEdges      Added edges as (actor, other actor, edge id) triples
+     * @return              Number of merges
+     */
+    public int addEdges(int numVertices, IntList newEdges){
+        int old = parent.length;
+        if(numVertices > old){
+            parent = Arrays.copyOf(parent, numVertices);
+            size = Arrays.copyOf(size, numVertices);
+            for(int v = old; v < numVertices; v++){
+                parent[v] = v;
+                size[v] = 1;
+            }
+            numComponents += numVertices - old;
+        }
+        IntList absorbed = new IntList();   //roots that stopped being roots
+        for(int i = 0; i < newEdges.size(); i += 3){
+            int ra = componentOf(newEdges.get(i)), rb = componentOf(newEdges.get(i + 1));
+            if(union(ra, rb)) absorbed.add(parent[ra] == ra ? rb : ra);
+        }
+        //only the absorbed roots get pointed straight at their new root: their members are then two links from it, and
+        //union by size keeps the chains that build up over many deltas to O(log n) links (lookups halve them as they go)
+        for(int i = 0; i < absorbed.size(); i++) parent[absorbed.get(i)] = componentOf(absorbed.get(i));
+        return absorbed.size();
+    }
+
+    /**
+     * Number of actors connected to an actor (itself included)
+     * @param v Dense actor id
+     * @return  Size of v's component
+     */
+    public int componentSize(int v){
+        return size[componentOf(v)];
+    }
+
+    /**
+     * Whether two actors are connected at all
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  true if they're in the same component
+     */
+    public boolean connected(int a, int b){
+        return componentOf(a) == componentOf(b);
+    }
+
+    public int numComponents() { return numComponents; }
+}
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Actors sorted by degree (number of distinct co-stars), built once with a counting sort
+ * degreeStart[d] is where the actors with degree d begin in the sorted order, so every degree range is one slice
+ * of the sorted array and comes out already sorted
+ * Added actors and edges are folded in without a re-sort: an actor whose degree goes up swaps places with the last
+ * actor of its degree and the boundary moves past it, so each new edge costs O(1) per end
+ */
+public class DegreeIndex {
+    private final CompactActorGraph graph;  //graph the degrees came from (for the names)
+    private int[] sorted;               //actor ids by non-decreasing degree (ties in id order until edges are added)
+    private int[] position;             //actor -> its index in sorted
+    private int size;                   //actors in sorted
+    private int[] degreeStart;          //degree -> index in sorted of the first actor with that degree
+    private int maxDegree;              //largest degree in the graph
+
+    /**
+     * Build the index for a graph
+     * @param graph CSR graph
+     */
+    public DegreeIndex(CompactActorGraph graph){
+        this.graph = graph;
+        int n = graph.numVertices();
+        int max = 0;
+        for(int v = 0; v < n; v++) max = Math.max(max, graph.degree(v));
+        maxDegree = max;
+        //counting sort: count each degree, turn the counts into starting offsets, then drop each actor into place
+        degreeStart = new int[maxDegree + 2];
+        for(int v = 0; v < n; v++) degreeStart[graph.degree(v) + 1]++;
+        for(int d = 0; d <= maxDegree; d++) degreeStart[d + 1] += degreeStart[d];
+        sorted = new int[n];
+        position = new int[n];
+        size = n;
+        int[] fill = degreeStart.clone();
+        for(int v = 0; v < n; v++){
+            position[v] = fill[graph.degree(v)]++;
+            sorted[position[v]] = v;
+        }
+    }
+
+    /**
+     * Bring the index up to date after actors and edges were added to the graph: new actors join with no co-stars,
+     * then both ends of each new edge move up one degree
+     * @param numVertices   Number of actors in the graph now
+     * @param newEdges      Added edges as (actor, other actor, edge id) triples
+     */
+    public void addEdges(int numVertices, IntList newEdges){
+        if(numVertices > sorted.length){
+            int capacity = Math.max(numVertices, 2 * sorted.length);
+            sorted = Arrays.copyOf(sorted, capacity);
+            position = Arrays.copyOf(position, capacity);
+        }
+        for(int v = size; v < numVertices; v++) addActor(v);
+        for(int i = 0; i < newEdges.size(); i += 3){
+            bump(newEdges.get(i));
+            bump(newEdges.get(i + 1));
+        }
+    }
+
+    /**
+     * Put a new actor at the end of degree 0, opening a slot there by moving the first actor of every higher degree to
+     * just past the end of its range
+     * @param v Dense id of the new actor
+     */
+    private void addActor(int v){
+        int free = size++;
+        degreeStart[maxDegree + 1] = size;
+        for(int d = maxDegree; d >= 1; d--){
+            int first = degreeStart[d];
+            if(first < free) place(sorted[first], free);
+            degreeStart[d] = first + 1;
+            free = first;
+        }
+        place(v, free);
+    }
+
+    /**
+     * Move an actor up one degree: swap it with the last actor of its degree, then start the next degree one earlier
+     * @param v Dense actor id
+     */
+    private void bump(int v){
+        int at = position[v];
+        //the actor's degree is the last one whose range starts at or before it
+        int d = Arrays.binarySearch(degreeStart, 0, maxDegree + 2, at);
+        if(d < 0) d = -d - 2;
+        else while(degreeStart[d + 1] == at) d++;    //skip the empty degrees that start at the same place
+        if(d == maxDegree){
+            maxDegree++;
+            if(maxDegree + 2 > degreeStart.length) degreeStart = Arrays.copyOf(degreeStart, 2 * (maxDegree + 2));
+            degreeStart[maxDegree + 1] = size;
+        }
+        int last = degreeStart[d + 1] - 1;
+        place(sorted[last], at);
+        place(v, last);
+        degreeStart[d + 1] = last;
+    }
+
+    /**
+     * Put an actor at an index in sorted
+     * @param v     Dense actor id
+     * @param at    Index in sorted
+     */
+    private void place(int v, int at){
+        sorted[at] = v;
+        position[v] = at;
+    }
+
+    /**
+     * Start of a degree range in the sorted order
+     * @param low   Smallest degree wanted
+     * @return      Index in sorted of the first actor with degree at least low
+     */
+    public int rangeStart(int low){
+        return degreeStart[Math.max(0, Math.min(low, maxDegree + 1))];
+    }
+
+    /**
+     * End of a degree range in the sorted order
+     * @param high  Largest degree wanted
+     * @return      Index in sorted just past the last actor with degree at most high
+     */
+    public int rangeEnd(int high){
+        if(high < 0) return 0;
+        return degreeStart[Math.min(high, maxDegree) + 1];
+    }
+
+    /**
+     * Actors with degree between low and high
+     * @param low   Smallest degree wanted
+     * @param high  Largest degree wanted
+     * @return      CompareNames of the actors in range, in non-decreasing degree order
+     */
+    public List<CompareNames<String>> degreesBetween(int low, int high){
+        int start = rangeStart(low), end = rangeEnd(high);
+        List<CompareNames<String>> list = new ArrayList<>(Math.max(0, end - start));
+        for(int i = start; i < end; i++){
+            list.add(new CompareNames<>(graph.nameOf(sorted[i]), graph.degree(sorted[i])));
+        }
+        return list;
+    }
+
+    /**
+     * Actors with the highest degrees
+     * @param k Number of actors wanted
+     * @return  Up to k actor ids, highest degree first
+     */
+    public int[] topK(int k){
+        k = Math.max(0, Math.min(k, size));
+        int[] top = new int[k];
+        for(int i = 0; i < k; i++) top[i] = sorted[size - 1 - i];
+        return top;
+    }
+
+    /**
+     * Number of actors with a given degree (one bar of the degree histogram)
+     * @param d Degree
+     * @return  Number of actors with exactly d co-stars
+     */
+    public int countAt(int d){
+        if(d < 0 || d > maxDegree) return 0;
+        return degreeStart[d + 1] - degreeStart[d];
+    }
+
+    /**
+     * Degree histogram of the whole graph
+     * @return  Array where entry d is the number of actors with degree d
+     */
+    public int[] histogram(){
+        int[] histogram = new int[maxDegree + 1];
+        for(int d = 0; d <= maxDegree; d++) histogram[d] = countAt(d);
+        return histogram;
+    }
+
+    public int getMaxDegree() { return maxDegree; }
+}
@@ -0,0 +1,114 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Applies a delta file of new actors, movies and credits to a live CompactActorGraph, so daily additions don't need a
+ * full reload
+ * The delta uses the same ids as the input files, one tagged record per line:
+ *   A|actorID|actorName
+ *   M|movieID|movieName
+ *   C|movieID|actorID
+ * Records can refer to anything already loaded or added earlier in the same delta; records that are already in the
+ * graph add nothing, so applying a delta twice is harmless. The edges the credits create are collected so callers can
+ * repair what depends on them (cached BFS results, components) instead of recomputing it
+ */
+public class DeltaLoader {
+    private final CompactActorGraph graph;  //graph to add to
+    private final IntIntHashMap actorIds;   //actor file id -> dense id (new actors are added to it)
+    private final IntIntHashMap movieIds;   //movie file id -> dense id (new movies are added to it)
+
+    /**
+     * Summary of one applied delta
+     */
+    public static class Delta {
+        private int actors, movies, credits;    //actors, movies and credits that weren't in the graph yet
+        private int skipped;                    //records that were malformed, named an unknown actor or movie, or
+                                                //gave a known id a different name
+        private final IntList newEdges = new IntList();    //(actor, other actor, edge id) for every edge created
+
+        //standard getters
+        public int getActors() { return actors; }
+        public int getMovies() { return movies; }
+        public int getCredits() { return credits; }
+        public int getSkipped() { return skipped; }
+        public IntList getNewEdges() { return newEdges; }
+        public int numNewEdges() { return newEdges.size() / 3; }
+
+        @Override
+        public String toString() {
+            return actors + " actors, " + movies + " movies and " + credits + " credits (" + numNewEdges() + " new edges, " + skipped + " skipped)";
+        }
+    }
+
+    /**
+     * Construct a loader for a graph
+     * @param graph     Graph to add to
+     * @param actorIds  Actor file id -> dense id of everything loaded so far
+     * @param movieIds  Movie file id -> dense id of everything loaded so far
+     */
+    public DeltaLoader(CompactActorGraph graph, IntIntHashMap actorIds, IntIntHashMap movieIds){
+        this.graph = graph;
+        this.actorIds = actorIds;
+        this.movieIds = movieIds;
+    }
+
+    /**
+     * Read a delta file and add everything in it to the graph
+     * @param file  Delta file
+     * @return      What was added
+     */
+    public Delta apply(String file) throws IOException {
+        Delta delta = new Delta();
+        //UTF-8 like the base files, so non-ASCII names match the actors already loaded
+        try(BufferedReader input = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)){
+            String line;
+            while((line = input.readLine()) != null){
+                if(line.isEmpty()) continue;
+                String[] lineArray = line.split("\\|", 3);
+                try{
+                    if(lineArray.length != 3) delta.skipped++;
+                    else if(lineArray[0].equals("A")){
+                        int id = Integer.parseInt(lineArray[1]);
+                        int known = actorIds.get(id, -1);
+                        //a repeated record adds nothing, and one that re-points a known id at another name is skipped
+                        if(known != -1){
+                            if(!graph.nameOf(known).equals(lineArray[2])) delta.skipped++;
+                            continue;
+                        }
+                        int before = graph.numVertices();
+                        int actor = graph.addActor(lineArray[2]);
+                        actorIds.put(id, actor);
+                        //a name that's already in the graph just gets another file id
+                        if(actor >= before) delta.actors++;
+                    }
+                    else if(lineArray[0].equals("M")){
+                        int id = Integer.parseInt(lineArray[1]);
+                        int known = movieIds.get(id, -1);
+                        if(known != -1){
+                            if(!graph.movieName(known).equals(lineArray[2])) delta.skipped++;
+                            continue;
+                        }
+                        int before = graph.numMovies();
+                        int movie = graph.addMovie(lineArray[2]);
+                        movieIds.put(id, movie);
+                        if(movie >= before) delta.movies++;
+                    }
+                    else if(lineArray[0].equals("C")){
+                        int movie = movieIds.get(Integer.parseInt(lineArray[1]), -1);
+                        int actor = actorIds.get(Integer.parseInt(lineArray[2]), -1);
+                        //skip credits that point at an actor or movie we don't know about
+                        if(movie == -1 || actor == -1) delta.skipped++;
+                        else if(graph.addCredit(movie, actor, delta.newEdges)) delta.credits++;
+                    }
+                    else delta.skipped++;
+                } catch (NumberFormatException e){
+                    delta.skipped++;
+                }
+            }
+        }
+        return delta;
+    }
+}
@@ -0,0 +1,250 @@
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Turns (movie, actor) credits into the edge list of the actor graph: one undirected edge per pair of actors who
+ * share a movie, labelled with every movie they share
+ * Each pair is packed into a long key (smaller id << 32 | larger id) in a primitive LongIntHashMap, and each edge's
+ * movies are chained through flat int arrays, so enumerating a cast's pairs allocates nothing per pair
+ * Movies can be split into shards that are built on separate threads and merged afterwards
+ */
+public class EdgeBuilder {
+    private final int numMovies;        //number of dense movie ids
+    private final int[] castOffsets;    //cast of movie m is castActors[castOffsets[m]] ... castActors[castOffsets[m+1]-1]
+    private final int[] castActors;     //every movie's cast, sorted ascending with repeated credits dropped
+
+    //output of build
+    private long[] edgeKeys;        //packed actor pairs, sorted ascending
+    private int[] labelOffsets;     //edge e's movies are labelMovies[labelOffsets[e]] ... labelMovies[labelOffsets[e+1]-1]
+    private int[] labelMovies;      //every edge's movies back to back, ascending within each edge
+
+    /**
+     * Construct a builder, grouping the credits by movie
+     * @param numMovies     Number of dense movie ids
+     * @param creditMovies  Dense movie id of each credit
+     * @param creditActors  Dense actor id of each credit
+     * @param numCredits    Number of credits in the two arrays
+     */
+    public EdgeBuilder(int numMovies, int[] creditMovies, int[] creditActors, int numCredits){
+        this.numMovies = numMovies;
+        //group the credits by movie with a counting sort
+        int[] offsets = new int[numMovies + 1];
+        for(int i = 0; i < numCredits; i++) offsets[creditMovies[i] + 1]++;
+        for(int m = 0; m < numMovies; m++) offsets[m + 1] += offsets[m];
+        int[] grouped = new int[numCredits];
+        int[] fill = Arrays.copyOf(offsets, numMovies);
+        for(int i = 0; i < numCredits; i++) grouped[fill[creditMovies[i]]++] = creditActors[i];
+        //sort each cast and drop repeated credits so nobody gets an edge to themselves
+        castOffsets = new int[numMovies + 1];
+        int end = 0;
+        for(int m = 0; m < numMovies; m++){
+            Arrays.sort(grouped, offsets[m], offsets[m + 1]);
+            for(int i = offsets[m]; i < offsets[m + 1]; i++){
+                if(i == offsets[m] || grouped[i] != grouped[i - 1]) grouped[end++] = grouped[i];
+            }
+            castOffsets[m + 1] = end;
+        }
+        castActors = Arrays.copyOf(grouped, end);
+    }
+
+    /**
+     * Enumerate every pair in every cast and build the edge list
+     * @param threads   Number of shards (and worker threads) to split the movies into
+     */
+    public void build(int threads){
+        List<Shard> shards = split(Math.max(1, threads));
+        if(shards.size() == 1){
+            shards.get(0).call();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(shards.size());
+            try{
+                for(Future<Shard> done: pool.invokeAll(shards)) done.get();
+            } catch (InterruptedException | ExecutionException e){
+                throw new IllegalStateException("Edge building failed", e);
+            } finally {
+                pool.shutdown();
+            }
+        }
+        merge(shards);
+    }
+
+    /**
+     * Split the movies into contiguous shards with roughly the same number of pairs each
+     * @param threads   Number of shards wanted
+     * @return          Shards in movie order
+     */
+    private List<Shard> split(int threads){
+        long totalPairs = 0;
+        for(int m = 0; m < numMovies; m++) totalPairs += pairs(m);
+        List<Shard> shards = new ArrayList<>();
+        long perShard = totalPairs / threads + 1;
+        long pairsSoFar = 0;
+        int lo = 0;
+        for(int m = 0; m < numMovies; m++){
+            pairsSoFar += pairs(m);
+            if(pairsSoFar >= perShard && shards.size() < threads - 1){
+                shards.add(new Shard(lo, m + 1, pairsSoFar));
+                lo = m + 1;
+                pairsSoFar = 0;
+            }
+        }
+        shards.add(new Shard(lo, numMovies, pairsSoFar));
+        return shards;
+    }
+
+    /**
+     * Number of actor pairs in a movie's cast
+     * @param m Dense movie id
+     * @return  cast size choose 2
+     */
+    private long pairs(int m){
+        long k = castOffsets[m + 1] - castOffsets[m];
+        return k * (k - 1) / 2;
+    }
+
+    /**
+     * Merge the shards' local edges into one sorted edge list
+     * Shards cover increasing movie ranges and are merged in order, so each edge's movies stay ascending
+     * @param shards    Built shards in movie order
+     */
+    private void merge(List<Shard> shards){
+        //give every distinct pair a global id and count how many movies it gets across all shards
+        int expected = 0;
+        for(Shard shard: shards) expected = Math.max(expected, shard.numEdges);
+        LongIntHashMap global = new LongIntHashMap(expected);
+        IntList counts = new IntList(expected);
+        long[] allKeys = new long[Math.max(1, expected)];
+        int numEdges = 0;
+        for(Shard shard: shards){
+            shard.globalIds = new int[shard.numEdges];
+            for(int e = 0; e < shard.numEdges; e++){
+                long key = shard.keys[e];
+                int id = global.get(key, -1);
+                if(id == -1){
+                    id = numEdges++;
+                    global.put(key, id);
+                    counts.add(0);
+                    if(id == allKeys.length) allKeys = Arrays.copyOf(allKeys, 2 * allKeys.length);
+                    allKeys[id] = key;
+                }
+                shard.globalIds[e] = id;
+                counts.set(id, counts.get(id) + shard.labelCounts[e]);
+            }
+        }
+        //sort the keys and work out where each global id lands
+        edgeKeys = Arrays.copyOf(allKeys, numEdges);
+        Arrays.sort(edgeKeys);
+        int[] rankOf = new int[numEdges];
+        labelOffsets = new int[numEdges + 1];
+        for(int r = 0; r < numEdges; r++){
+            int id = global.get(edgeKeys[r], -1);
+            rankOf[id] = r;
+            labelOffsets[r + 1] = labelOffsets[r] + counts.get(id);
+        }
+        //copy every shard's movie chains into place
+        labelMovies = new int[labelOffsets[numEdges]];
+        int[] fill = Arrays.copyOf(labelOffsets, numEdges);
+        for(Shard shard: shards){
+            for(int e = 0; e < shard.numEdges; e++){
+                int r = rankOf[shard.globalIds[e]];
+                for(int link = shard.head[e]; link != -1; link = shard.next.get(link)){
+                    labelMovies[fill[r]++] = shard.movies.get(link);
+                }
+            }
+            //the shard isn't needed anymore
+            shard.release();
+        }
+    }
+
+    //getters for the output of build, and for the grouped casts
+    public long[] getEdgeKeys() { return edgeKeys; }
+    public int[] getLabelOffsets() { return labelOffsets; }
+    public int[] getLabelMovies() { return labelMovies; }
+    public int[] getCastOffsets() { return castOffsets; }
+    public int[] getCastActors() { return castActors; }
+
+    /**
+     * The local edges of one contiguous range of movies
+     */
+    private class Shard implements Callable<Shard> {
+        private final int lo, hi;       //movies lo ... hi-1
+        private final long expectedPairs;
+        private LongIntHashMap localIds;    //packed pair -> local edge id
+        private long[] keys;            //local edge id -> packed pair
+        private int[] head, tail;       //local edge id -> first/last link of its movie chain
+        private int[] labelCounts;      //local edge id -> number of movies
+        private IntList movies, next;   //link -> movie, and the next link in the same edge's chain (or -1)
+        private int numEdges;
+        private int[] globalIds;        //local edge id -> global edge id (filled in by merge)
+
+        Shard(int lo, int hi, long expectedPairs){
+            this.lo = lo;
+            this.hi = hi;
+            this.expectedPairs = expectedPairs;
+        }
+
+        @Override
+        public Shard call() {
+            int capacity = (int)Math.min(expectedPairs + 1, 1 << 20);   //grows past this if it has to
+            localIds = new LongIntHashMap(capacity);
+            keys = new long[capacity];
+            head = new int[capacity];
+            tail = new int[capacity];
+            labelCounts = new int[capacity];
+            movies = new IntList(capacity);
+            next = new IntList(capacity);
+            for(int m = lo; m < hi; m++){
+                int end = castOffsets[m + 1];
+                //the cast is sorted, so the smaller id of each pair always comes first
+                for(int i = castOffsets[m]; i < end - 1; i++){
+                    long high = (long)castActors[i] << 32;
+                    for(int j = i + 1; j < end; j++){
+                        addLabel(high | castActors[j], m);
+                    }
+                }
+            }
+            localIds = null;
+            return this;
+        }
+
+        /**
+         * Append a movie to a pair's chain, creating the local edge the first time the pair shows up
+         * @param key   Packed actor pair
+         * @param movie Dense movie id they share
+         */
+        private void addLabel(long key, int movie){
+            int link = movies.size();
+            movies.add(movie);
+            next.add(-1);
+            int e = localIds.get(key, -1);
+            if(e == -1){
+                e = numEdges++;
+                localIds.put(key, e);
+                if(e == keys.length){
+                    keys = Arrays.copyOf(keys, 2 * e);
+                    head = Arrays.copyOf(head, 2 * e);
+                    tail = Arrays.copyOf(tail, 2 * e);
+                    labelCounts = Arrays.copyOf(labelCounts, 2 * e);
+                }
+                keys[e] = key;
+                head[e] = link;
+            } else {
+                next.set(tail[e], link);
+            }
+            tail[e] = link;
+            labelCounts[e]++;
+        }
+
+        /**
+         * Drop the shard's arrays once they've been merged
+         */
+        private void release(){
+            keys = null;
+            head = tail = labelCounts = globalIds = null;
+            movies = next = null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.io.IOException;
+
+/**
+ * Benchmark driver for EdgeBuilder on the bacon/ files: time and allocation per actor pair enumerated, single-threaded
+ * and sharded across every core
+ */
+public class EdgeBuilderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        BaconLoader loader = new BaconLoader();
+        loader.load(KevinBacon.ACTORS_FILE, KevinBacon.MOVIES_FILE, KevinBacon.MOVIE_ACTORS_FILE);
+        int[][] credits = loader.getCredits();
+        //count the pairs the builder has to enumerate
+        EdgeBuilder grouped = new EdgeBuilder(loader.numMovies(), credits[0], credits[1], loader.numCredits());
+        long pairs = 0;
+        int[] castOffsets = grouped.getCastOffsets();
+        for(int m = 0; m < loader.numMovies(); m++){
+            long k = castOffsets[m + 1] - castOffsets[m];
+            pairs += k * (k - 1) / 2;
+        }
+        System.out.println(loader.numCredits() + " credits, " + pairs + " actor pairs");
+        int cores = Runtime.getRuntime().availableProcessors();
+        for(int threads: new int[]{1, cores}){
+            double ms = Bench.time("EdgeBuilder.build, " + threads + " thread(s)", 3, 10, () -> {
+                EdgeBuilder edges = new EdgeBuilder(loader.numMovies(), credits[0], credits[1], loader.numCredits());
+                edges.build(threads);
+            });
+            System.out.printf("    %.1f ns/pair%n", ms * 1e6 / pairs);
+            if(cores == 1) break;
+        }
+        long bytes = Bench.allocatedBytes(() -> new EdgeBuilder(loader.numMovies(), credits[0], credits[1], loader.numCredits()).build(1));
+        System.out.printf("    %.1f bytes allocated/pair (1 thread)%n", (double) bytes / pairs);
+    }
+}
@@ -1,6 +1,9 @@
 import java.util.*;
 
 public class GraphLibBacon extends GraphLib{
+    private static final Metrics.Op GRAPH_BFS = Metrics.op("graph bfs");
+    private static final Metrics.Op GRAPH_PATH = Metrics.op("graph getPath");
+    private static final Metrics.Op GET_PATH = Metrics.op("getPath");
 
     /**
      * Create the BFS tree from the main graph centered at some root vertex
@@ -11,6 +14,7 @@ public class GraphLibBacon extends GraphLib{
      * @return          BFS tree from root node as a directed graph
      */
     public static <V,E> Graph<V,E> bfs(Graph<V,E> g, V source){
+        long start = Metrics.start(), allocated = Metrics.allocated();
         //create bfs graph centered at source
         Graph<V,E> bfsGraph = new AdjacencyMapGraph<>();
         //create queue for BFS and set to hold visited nodes
@@ -38,6 +42,7 @@ public class GraphLibBacon extends GraphLib{
                 }
             }
         }
+        GRAPH_BFS.record(start, allocated, visited.size());
         return bfsGraph;
     }
 
@@ -50,6 +55,7 @@ public class GraphLibBacon extends GraphLib{
      * @return      List of vertices in order from v to root
      */
     public static <V,E> List<V> getPath(Graph<V,E> tree, V v){
+        long start = Metrics.start(), allocated = Metrics.allocated();
         List<V> pathList = new ArrayList<>();
         Iterable<V> parent;
         //ensure that the chosen destination is connected to the source
@@ -67,6 +73,7 @@ public class GraphLibBacon extends GraphLib{
             pathList.add(prev);
             parent = tree.outNeighbors(prev);
         }
+        GRAPH_PATH.record(start, allocated, pathList.size());
         return pathList;
     }
 
@@ -112,24 +119,31 @@ public class GraphLibBacon extends GraphLib{
     }
 
     /**
-     * Helper to get total separation in the BFS tree
+     * Helper to get total separation in the BFS tree (level by level with a queue, so deep trees can't overflow the stack)
      * @param tree  BFS tree
      * @param root  Root vertex of BFS tree
-     * @param depth current depth of the vertex being track
+     * @param depth depth of the root vertex
      * @param <V>   Generic type for Vertex
      * @param <E>   Generic type for Edge
      * @return      total separation of all nodes in the BFS tree from the root as a double
      */
     public static <V,E> double separationHelper(Graph<V,E> tree, V root, int depth){
         double total = 0;
-        //get iterable of all children of current vertex
-        Iterable<V> children = tree.inNeighbors(root);
-        //increase total by the depth of the current node in the tree (its distance from source node)
-        total += depth;
-        //for each child vertex...
-        for(V child: children){
-            //recursively call the helper on each child to get the distance/height of each of its children, and so on...
-            total += separationHelper(tree,child, depth+1);
+        //queue of vertices still to visit, with a matching queue of their depths
+        Queue<V> queue = new ArrayDeque<>();
+        Queue<Integer> depths = new ArrayDeque<>();
+        queue.add(root);
+        depths.add(depth);
+        while(!queue.isEmpty()){
+            V curr = queue.remove();
+            int currDepth = depths.remove();
+            //increase total by the depth of the current node in the tree (its distance from source node)
+            total += currDepth;
+            //children (the vertices pointing at curr) are one level further down
+            for(V child: tree.inNeighbors(curr)){
+                queue.add(child);
+                depths.add(currDepth + 1);
+            }
         }
         return total;
     }
@@ -150,20 +164,30 @@ public class GraphLibBacon extends GraphLib{
     }
 
     /**
-     * Helper to get the separation of each node from root (recursive DFS)
+     * Helper to get the separation of each node from root (level by level with a queue, so deep trees can't overflow the stack)
      * @param tree  BFS tree
-     * @param curr  Current node
+     * @param curr  Root of the subtree to add
      * @param list  List of CompareNames objects
-     * @param depth int to track depth
+     * @param depth depth of curr
      * @param <V>   Generic Type of the Vertex
      * @param <E>   Generic Type of the Edge
      */
     public static <V,E> void getSeparationsHelper(Graph<V,E> tree, V curr, ArrayList<CompareNames> list, int depth){
-        //add a new CompareNames object to the list with the current vertex's name and depth
-        list.add(new CompareNames(curr, depth));
-        //recur on children of current node that are 1 depth level further from the root
-        for(V v: tree.inNeighbors(curr)){
-            getSeparationsHelper(tree, v, list, depth+1);
+        //queue of vertices still to visit, with a matching queue of their depths
+        Queue<V> queue = new ArrayDeque<>();
+        Queue<Integer> depths = new ArrayDeque<>();
+        queue.add(curr);
+        depths.add(depth);
+        while(!queue.isEmpty()){
+            V v = queue.remove();
+            int vDepth = depths.remove();
+            //add a new CompareNames object to the list with the current vertex's name and depth
+            list.add(new CompareNames(v, vDepth));
+            //children of the current node are 1 depth level further from the root
+            for(V child: tree.inNeighbors(v)){
+                queue.add(child);
+                depths.add(vDepth + 1);
+            }
         }
     }
 
@@ -187,4 +211,98 @@ public class GraphLibBacon extends GraphLib{
         return amt-1; //minus 1 for its own path
     }
 
+    /**
+     * Returns the actors en route from the parameter to the root of an array-based BFS
+     * @param graph     CSR graph the BFS ran on
+     * @param result    BFS result from the root actor
+     * @param v         The starting point of the path (going from v to root)
+     * @return          List of actor names in order from v to root
+     */
+    public static List<String> getPath(CompactActorGraph graph, BFSResult result, String v){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        List<String> pathList = new ArrayList<>();
+        //ensure that the chosen destination is connected to the source
+        int curr = graph.indexOf(v);
+        if(curr == -1 || !result.isReached(curr)){
+            System.out.println("Vertex \""+v+"\" isn't connected to the chosen center.");
+            return pathList;
+        }
+        //follow the parent pointers until there's no parent (which means we are at the source)
+        while(curr != -1){
+            pathList.add(graph.nameOf(curr));
+            curr = result.parent[curr];
+        }
+        GET_PATH.record(start, allocated, pathList.size());
+        return pathList;
+    }
+
+    /**
+     * Find the actors in the graph that an array-based BFS didn't reach (not connected to its root)
+     * @param graph     CSR graph the BFS ran on
+     * @param result    BFS result from some specified root
+     * @return          Set of the names of all actors with infinite separation from the root
+     */
+    public static Set<String> missingVertices(CompactActorGraph graph, BFSResult result){
+        Set<String> missing = new HashSet<>();
+        for(int v = 0; v < graph.numVertices(); v++){
+            if(!result.isReached(v)) missing.add(graph.nameOf(v));
+        }
+        return missing;
+    }
+
+    /**
+     * Find the actors that aren't connected to a center, by component id instead of by searching
+     * @param graph         CSR graph
+     * @param components    Connected components of the graph
+     * @param center        Dense id of the center actor
+     * @return              Set of the names of all actors with infinite separation from the center
+     */
+    public static Set<String> missingVertices(CompactActorGraph graph, ConnectedComponents components, int center){
+        Set<String> missing = new HashSet<>();
+        int centerComponent = components.componentOf(center);
+        for(int v = 0; v < graph.numVertices(); v++){
+            if(components.componentOf(v) != centerComponent) missing.add(graph.nameOf(v));
+        }
+        return missing;
+    }
+
+    /**
+     * Gets the average separation of each reached actor from the root of an array-based BFS
+     * @param result    BFS result
+     * @return          Average separation of all reached actors from the root (0 if only the root was reached)
+     */
+    public static double averageSeparation(BFSResult result){
+        return new TreeMetrics(result).averageSeparation();
+    }
+
+    /**
+     * Get the separations of each reached actor from the root of an array-based BFS
+     * @param graph     CSR graph the BFS ran on
+     * @param result    BFS result
+     * @return          List of CompareNames objects in non-decreasing separation order (BFS visits actors level by level)
+     */
+    public static List<CompareNames<String>> getSeparations(CompactActorGraph graph, BFSResult result){
+        return new TreeMetrics(result).separationsBetween(graph, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Betweenness centrality of an actor within an array-based BFS tree: the number of other actors whose path to
+     * the root goes through it, which is just the size of its subtree minus itself
+     * @param result    BFS result
+     * @param v         Dense id of the actor to get centrality of
+     * @return          Number of paths to the root going through v, or -1 if v isn't connected to the root
+     */
+    public static int betweennessCentrality(BFSResult result, int v){
+        if(!result.isReached(v)) return -1;
+        //walk the tree from the deepest actors up, adding each actor's subtree size into its parent's
+        //(only counts are needed, so a throwaway array is fine here)
+        int[] subtree = new int[result.depth.length];
+        for(int i = result.count - 1; i >= 0; i--){
+            int child = result.order[i];
+            subtree[child]++;
+            if(i > 0) subtree[result.parent[child]] += subtree[child];
+        }
+        return subtree[v] - 1; //minus 1 for its own path
+    }
+
 }
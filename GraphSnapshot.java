@@ -0,0 +1,305 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the fully built CompactActorGraph, so startup doesn't have to parse the 3 text files and rebuild
+ * the edges every time
+ * Holds both name dictionaries (hash tables included), the CSR adjacency, the shared-movie labels, the casts and the
+ * file id -> dense id maps, each as a raw array. Loading memory-maps the file and bulk-copies each section straight
+ * into its array, so nothing is parsed, hashed, sorted or rebuilt; the copy is a memcpy because the arrays are written
+ * in native (little-endian) order. The arrays are copied rather than read in place because every fast path takes
+ * plain int[]s
+ *
+ * Layout (little-endian): int magic, int version, long checksum of the input files, long file length, int CRC32C of
+ * everything after the header, int unused, then each array as an int length followed by its elements, in the order of
+ * write() below. The CRC is checked before anything is built, so a damaged snapshot is rejected instead of loaded
+ */
+public class GraphSnapshot {
+    static final String SNAPSHOT_FILE = "bacon/graph.snapshot";    //default place to keep the snapshot
+    private static final int MAGIC = 0x4247534E;    //"BGSN"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final long WINDOW_BYTES = 1L << 30;      //most bytes mapped at once (a mapping can't pass 2GB)
+    private static final int BUFFER_BYTES = 1 << 20;        //write buffer
+
+    private final CompactActorGraph graph;
+    private final IntIntHashMap actorIds;   //actors.txt id -> dense actor id
+    private final IntIntHashMap movieIds;   //movies.txt id -> dense movie id
+
+    /**
+     * Construct a snapshot of a graph and its id maps
+     * @param graph     Graph as built from the input files
+     * @param actorIds  Actor file id -> dense id
+     * @param movieIds  Movie file id -> dense id
+     */
+    public GraphSnapshot(CompactActorGraph graph, IntIntHashMap actorIds, IntIntHashMap movieIds){
+        this.graph = graph;
+        this.actorIds = actorIds;
+        this.movieIds = movieIds;
+    }
+
+    //standard getters
+    public CompactActorGraph getGraph() { return graph; }
+    public IntIntHashMap getActorIds() { return actorIds; }
+    public IntIntHashMap getMovieIds() { return movieIds; }
+
+    /**
+     * Write the snapshot out (to a temporary file first, moved into place at the end, so a crash can't leave a
+     * half-written snapshot behind)
+     * Only a graph with nothing added since it was built can be saved, since the overlay isn't part of the format
+     * @param path      File to write (replaced if it exists)
+     * @param checksum  Checksum of the input files the graph came from (KevinBacon.inputChecksum)
+     */
+    public void save(String path, long checksum) throws IOException {
+        if(graph.hasExtras() || graph.offsets().length != graph.numVertices() + 1 || graph.castOffsets().length != graph.numMovies() + 1){
+            throw new IllegalStateException("Cannot snapshot a graph that has had actors, movies or credits added");
+        }
+        Path target = Paths.get(path);
+        Path temp = Paths.get(path + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            Writer out = new Writer(channel);
+            out.buffer.putInt(MAGIC).putInt(VERSION).putLong(checksum).putLong(0).putInt(0).putInt(0);
+            write(out, graph.getActorNames());
+            write(out, graph.getMovieNames());
+            out.ints(graph.offsets());
+            out.ints(graph.neighbors());
+            out.ints(graph.edgeIds());
+            out.ints(graph.labelOffsets());
+            out.ints(graph.labelMovies());
+            out.ints(graph.castOffsets());
+            out.ints(graph.castActors());
+            write(out, actorIds);
+            write(out, movieIds);
+            out.flush();
+            //fill in the length and CRC now that they're known, so a truncated or damaged file is easy to spot
+            ByteBuffer trailer = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putLong(0, channel.size()).putInt(8, (int) out.crc.getValue());
+            channel.write(trailer, 16);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write a name dictionary's arrays
+     * @param out   Where to write
+     * @param names Dictionary to write
+     */
+    private static void write(Writer out, NameDictionary names) throws IOException {
+        out.putInt(names.size());
+        out.bytes(names.bytes(), names.byteSize());
+        out.ints(names.offsets(), names.size() + 1);
+        out.ints(names.hashes(), Math.max(1, names.size()));
+        out.ints(names.table());
+    }
+
+    /**
+     * Write an id map's table
+     * @param out   Where to write
+     * @param ids   Map to write
+     */
+    private static void write(Writer out, IntIntHashMap ids) throws IOException {
+        out.putInt(ids.size());
+        out.ints(ids.keys());
+        out.ints(ids.values());
+    }
+
+    /**
+     * Load a saved snapshot, as long as it was made from the current input files
+     * @param path      Snapshot file
+     * @param checksum  Checksum of the current input files (KevinBacon.inputChecksum)
+     * @return          The snapshot, or null if it's missing, unreadable, truncated or stale
+     */
+    public static GraphSnapshot load(String path, long checksum){
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            if(channel.size() < HEADER_BYTES) return null;
+            Reader in = new Reader(channel);
+            if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum || in.readLong() != channel.size()) return null;
+            int crc = in.readInt();
+            in.readInt();
+            if(crc != payloadCrc(channel)){
+                System.err.println("Graph snapshot "+path+" is damaged (CRC mismatch)");
+                return null;
+            }
+            NameDictionary actorNames = readNames(in);
+            NameDictionary movieNames = readNames(in);
+            CompactActorGraph graph = new CompactActorGraph(actorNames, movieNames, in.ints(), in.ints(), in.ints(), in.ints(), in.ints(), in.ints(), in.ints());
+            IntIntHashMap actorIds = readIds(in);
+            IntIntHashMap movieIds = readIds(in);
+            return new GraphSnapshot(graph, actorIds, movieIds);
+        } catch (NoSuchFileException e){
+            return null;
+        } catch (IOException | RuntimeException e){
+            //a snapshot that doesn't parse is as good as missing; the caller falls back to the text files
+            System.err.println("Cannot read graph snapshot "+path+"\n"+e);
+            return null;
+        }
+    }
+
+    /**
+     * CRC32C of everything after the header, read through the mapping a window at a time
+     * @param channel   Snapshot file
+     * @return          The CRC, as the int stored in the header
+     */
+    private static int payloadCrc(FileChannel channel) throws IOException {
+        CRC32C crc = new CRC32C();
+        for(long position = HEADER_BYTES; position < channel.size(); position += WINDOW_BYTES){
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, channel.size() - position)));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Read a name dictionary written by write(Writer, NameDictionary)
+     * @param in    Where to read
+     * @return      The dictionary
+     */
+    private static NameDictionary readNames(Reader in) throws IOException {
+        int size = in.readInt();
+        return new NameDictionary(in.bytes(), in.ints(), in.ints(), in.ints(), size);
+    }
+
+    /**
+     * Read an id map written by write(Writer, IntIntHashMap)
+     * @param in    Where to read
+     * @return      The map
+     */
+    private static IntIntHashMap readIds(Reader in) throws IOException {
+        int size = in.readInt();
+        return new IntIntHashMap(in.ints(), in.ints(), size);
+    }
+
+    /**
+     * Buffered little-endian writer of length-prefixed arrays to a channel
+     */
+    private static class Writer {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        final CRC32C crc = new CRC32C();    //CRC of everything written after the header
+        long written;                       //bytes written so far
+
+        Writer(FileChannel channel){
+            this.channel = channel;
+        }
+
+        /**
+         * Write the buffer out once fewer than some bytes are left in it
+         * @param bytes Bytes about to be put
+         */
+        void ensure(int bytes) throws IOException {
+            if(buffer.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            //the header is filled in at the end, so it stays out of the CRC
+            ByteBuffer payload = buffer.duplicate();
+            payload.position((int) Math.min(payload.limit(), Math.max(0, HEADER_BYTES - written)));
+            crc.update(payload);
+            written += buffer.remaining();
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buffer.putInt(v);
+        }
+
+        void ints(int[] a) throws IOException {
+            ints(a, a.length);
+        }
+
+        /**
+         * Write the first count elements of an array, in buffer-sized pieces
+         * @param a     Array to write
+         * @param count Elements to write
+         */
+        void ints(int[] a, int count) throws IOException {
+            putInt(count);
+            for(int i = 0; i < count; ){
+                ensure(4);
+                int n = Math.min(count - i, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(a, i, n);
+                buffer.position(buffer.position() + 4 * n);
+                i += n;
+            }
+        }
+
+        void bytes(byte[] a, int count) throws IOException {
+            putInt(count);
+            for(int i = 0; i < count; ){
+                ensure(1);
+                int n = Math.min(count - i, buffer.remaining());
+                buffer.put(a, i, n);
+                i += n;
+            }
+        }
+    }
+
+    /**
+     * Reader of length-prefixed arrays from a memory-mapped channel, mapping a window at a time so files over 2GB work
+     */
+    private static class Reader {
+        final FileChannel channel;
+        MappedByteBuffer window;    //mapping of the file from windowStart
+        long windowStart;
+
+        Reader(FileChannel channel){
+            this.channel = channel;
+        }
+
+        /**
+         * Make sure the next bytes are in the window, mapping a new one starting at the current position if not
+         * @param bytes Bytes about to be read (at most WINDOW_BYTES)
+         */
+        void ensure(int bytes) throws IOException {
+            if(window != null && window.remaining() >= bytes) return;
+            long position = window == null ? 0 : windowStart + window.position();
+            if(position + bytes > channel.size()) throw new IOException("Snapshot is truncated");
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, channel.size() - position));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return window.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            return window.getLong();
+        }
+
+        /**
+         * Read an int array, bulk-copying it out of the mapping a window at a time
+         * @return  The array
+         */
+        int[] ints() throws IOException {
+            int[] a = new int[readInt()];
+            for(int i = 0; i < a.length; ){
+                ensure(4);
+                int n = Math.min(a.length - i, window.remaining() / 4);
+                window.asIntBuffer().get(a, i, n);
+                window.position(window.position() + 4 * n);
+                i += n;
+            }
+            return a;
+        }
+
+        byte[] bytes() throws IOException {
+            byte[] a = new byte[readInt()];
+            for(int i = 0; i < a.length; ){
+                ensure(1);
+                int n = Math.min(a.length - i, window.remaining());
+                window.get(a, i, n);
+                i += n;
+            }
+            return a;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, so building big id arrays doesn't box every element into an Integer
+ */
+public class IntList {
+    private int[] data;     //backing array, only the first size entries are used
+    private int size;       //number of ints in the list
+
+    /**
+     * Construct an empty list with a default starting capacity
+     */
+    public IntList(){
+        this(16);
+    }
+
+    /**
+     * Construct an empty list
+     * @param capacity  Starting capacity
+     */
+    public IntList(int capacity){
+        data = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Append an int, doubling the backing array when it's full
+     * @param value Value to add
+     */
+    public void add(int value){
+        if(size == data.length) data = Arrays.copyOf(data, 2 * size);
+        data[size++] = value;
+    }
+
+    //standard getters/setters
+    public int get(int i) { return data[i]; }
+    public void set(int i, int value) { data[i] = value; }
+    public int size() { return size; }
+    public void clear() { size = 0; }
+
+    /**
+     * Backing array for fast loops (valid up to size(), and replaced whenever the list grows)
+     * @return  The backing array
+     */
+    public int[] array() { return data; }
+
+    /**
+     * Copy of the list trimmed to its size
+     * @return  New int array holding exactly the list's contents
+     */
+    public int[] toArray() { return Arrays.copyOf(data, size); }
+}
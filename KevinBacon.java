@@ -1,17 +1,31 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.zip.CRC32;
 
 /**
  * Creates the framework for the main graph (the graph with all actors as vertices and their shared moves as edges)
  * Handles reading in the input from all 3 files as well
  */
 public class KevinBacon {
+    static final String ACTORS_FILE = "bacon/actors.txt";               //actorID|actorName
+    static final String MOVIES_FILE = "bacon/movies.txt";               //movieID|movieName
+    static final String MOVIE_ACTORS_FILE = "bacon/movie-actors.txt";   //movieID|actorID
+    static final long PAIR_LIMIT = 200_000_000L;    //most co-star pairs loadForSearch builds the actor graph for
+    private static final Metrics.Op LOAD_SNAPSHOT = Metrics.op("load snapshot");
+
     Graph<String, Set<String>> mainGraph;   //Map for the main graph of actor nodes and sets of shared movie edges
     HashMap<Integer, String> actorMap;      //Map for actor ID -> actor Name
     HashMap<Integer, String> movieMap;      //Map for movie ID -> movie Name
     HashMap<String, List<String>> actorsInMovieMap; //Map for movie Name -> list of Actor Name's in that movie
+    CompactActorGraph compactGraph;         //CSR version of the main graph
+    IntIntHashMap actorIds, movieIds;       //file ids -> dense ids in compactGraph (for applying deltas that use file ids)
+    BipartiteIndex bipartiteIndex;          //actor-movie index to search instead of compactGraph's edges, when it has none
     BufferedReader input;
 
     /**
@@ -29,7 +43,7 @@ public class KevinBacon {
         //read in actorID -> actorName
         actorMap = new HashMap<>();
         try{
-            input = new BufferedReader(new FileReader("bacon/actors.txt"));
+            input = new BufferedReader(new FileReader(ACTORS_FILE));
             String line;
             //add actorID -> actorName in map
             while((line = input.readLine()) != null){
@@ -61,7 +75,7 @@ public class KevinBacon {
         //read in movieID -> movieName
         movieMap = new HashMap<>();
         try{
-            input = new BufferedReader(new FileReader("bacon/movies.txt"));
+            input = new BufferedReader(new FileReader(MOVIES_FILE));
             String line;
             //add movieID -> movieName in map
             while((line = input.readLine()) != null){
@@ -91,7 +105,7 @@ public class KevinBacon {
         //read in movieID -> actorID
         actorsInMovieMap = new HashMap<>();
         try{
-            input = new BufferedReader(new FileReader("bacon/movie-actors.txt"));
+            input = new BufferedReader(new FileReader(MOVIE_ACTORS_FILE));
             String line;
             //add movieID -> movieName in map
             while((line = input.readLine()) != null){
@@ -165,10 +179,135 @@ public class KevinBacon {
         }
     }
 
+    /**
+     * Create the main graph as a CSR graph keyed by dense int ids instead of the AdjacencyMapGraph
+     * Streams all 3 files through BaconLoader, which feeds id credits straight into the graph builder without the
+     * name maps above; entries that share a name share an id, so the result has exactly the vertices and edges
+     * createGraph would give
+     */
+    public void createCompactGraph(){
+        BaconLoader loader = loadCredits();
+        compactGraph = loader.buildGraph();
+        actorIds = loader.getActorIds();
+        movieIds = loader.getMovieIds();
+    }
+
+    /**
+     * Stream all 3 files through BaconLoader
+     * @return  Loader holding the credits
+     */
+    private BaconLoader loadCredits(){
+        BaconLoader loader = new BaconLoader();
+        try{
+            loader.load(ACTORS_FILE, MOVIES_FILE, MOVIE_ACTORS_FILE);
+        } catch (IOException e){
+            System.err.println("IO Error while reading in input files\n"+e.getMessage());
+        }
+        System.out.println("Loaded " + loader.numActors() + " actors, " + loader.numMovies() + " movies and " + loader.numCredits() + " credits");
+        return loader;
+    }
+
+    /**
+     * Load the CSR graph from the binary snapshot if there's one made from the current input files, or from the text
+     * files if not (saving a snapshot so the next start can skip them)
+     * @param checksum  Checksum of the input files (inputChecksum)
+     */
+    public void loadCompactGraph(long checksum){
+        if(loadSnapshot(checksum)) return;
+        createCompactGraph();
+        saveSnapshot(checksum);
+    }
+
+    /**
+     * Load for path and separation search only: the same as loadCompactGraph, except that when the casts would expand
+     * to more than PAIR_LIMIT co-star pairs, the credits are kept as a bipartiteIndex instead and compactGraph only
+     * holds the names and casts, with no edges (and no snapshot is saved, since there are no edges to save)
+     * @param checksum  Checksum of the input files (inputChecksum)
+     */
+    public void loadForSearch(long checksum){
+        if(loadSnapshot(checksum)) return;
+        BaconLoader loader = loadCredits();
+        actorIds = loader.getActorIds();
+        movieIds = loader.getMovieIds();
+        long pairs = loader.actorPairs();
+        if(pairs > PAIR_LIMIT){
+            System.out.println("The casts make up to " + pairs + " co-star pairs, so searching the actor-movie index instead of building the actor graph");
+            bipartiteIndex = loader.buildIndex();
+            compactGraph = loader.buildNames(bipartiteIndex);
+            return;
+        }
+        compactGraph = loader.buildGraph();
+        saveSnapshot(checksum);
+    }
+
+    /**
+     * Load the CSR graph from the binary snapshot, if there's one made from the current input files
+     * @param checksum  Checksum of the input files (inputChecksum)
+     * @return          true if the snapshot was loaded
+     */
+    private boolean loadSnapshot(long checksum){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        GraphSnapshot snapshot = GraphSnapshot.load(GraphSnapshot.SNAPSHOT_FILE, checksum);
+        if(snapshot == null) return false;
+        compactGraph = snapshot.getGraph();
+        actorIds = snapshot.getActorIds();
+        movieIds = snapshot.getMovieIds();
+        LOAD_SNAPSHOT.record(start, allocated, compactGraph.numVertices());
+        //with metrics off there's no start time, so the load time is left out like every other op's
+        String took = Metrics.ENABLED ? String.format(" in %.1f ms", (System.nanoTime() - start) / 1e6) : "";
+        System.out.printf("Loaded %d actors, %d movies and %d edges from %s%s%n", compactGraph.numVertices(), compactGraph.numMovies(),
+                compactGraph.numBaseEdges(), GraphSnapshot.SNAPSHOT_FILE, took);
+        return true;
+    }
+
+    /**
+     * Save the CSR graph as a snapshot, so the next start can skip the text files
+     * @param checksum  Checksum of the input files (inputChecksum)
+     */
+    private void saveSnapshot(long checksum){
+        try{
+            new GraphSnapshot(compactGraph, actorIds, movieIds).save(GraphSnapshot.SNAPSHOT_FILE, checksum);
+        } catch (IOException e){
+            System.err.println("Cannot save graph snapshot\n"+e.getMessage());
+        }
+    }
+
+    /**
+     * CRC32 checksum over the contents of all 3 input files, so anything saved from them can tell when they change
+     * @return  Checksum of actors.txt, movies.txt and movie-actors.txt (in that order)
+     */
+    public static long inputChecksum() throws IOException {
+        return checksum(ACTORS_FILE, MOVIES_FILE, MOVIE_ACTORS_FILE);
+    }
+
+    /**
+     * CRC32 checksum over the contents of some files
+     * @param files Files to checksum, in order
+     * @return      Checksum of all their bytes back to back
+     */
+    public static long checksum(String... files) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        for(String file: files){
+            try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)){
+                while(channel.read(buffer) != -1){
+                    buffer.flip();
+                    crc.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
     //basic getters for all the maps
     public Graph<String, Set<String>> getMainGraph() {
         return mainGraph;
     }
+    public CompactActorGraph getCompactGraph() { return compactGraph; }
+    public IntIntHashMap getActorIds() { return actorIds; }
+    public IntIntHashMap getMovieIds() { return movieIds; }
+    public BipartiteIndex getBipartiteIndex() { return bipartiteIndex; }
     public HashMap<Integer, String> getActorMap() { return actorMap; }
     public HashMap<Integer, String> getMovieMap() { return movieMap; }
     public HashMap<String, List<String>> getActorsInMovieMap() {
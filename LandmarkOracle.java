@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Landmark distance oracle: BFS depths from k well-connected actors, kept as one byte per actor per landmark, that
+ * bound the separation of any two actors in O(k) without searching
+ *  - upper bound: min over landmarks l of d(a,l) + d(l,b) (the length of a real path through l)
+ *  - lower bound: max over landmarks l of |d(a,l) - d(l,b)| (triangle inequality)
+ * distance() turns the bounds into an exact answer with a bidirectional BFS that stops as soon as it can't beat the
+ * upper bound and never expands an actor whose lower bound to the far end already rules it out
+ * The bounds are thread-safe; distance() takes its search scratch out of a pool
+ *
+ * File layout (big-endian), memory-mapped and read in place like CentralityIndex: int magic, int version, long
+ * checksum of the input files, int numActors, int k, int[k] landmark ids, then byte[numActors * k] depths, actor-major
+ * (all of one actor's depths sit together, so a query touches two short runs of bytes)
+ */
+public class LandmarkOracle {
+    static final String INDEX_FILE = "bacon/landmarks.idx";    //default place to keep the oracle
+    public static final int UNREACHABLE = Integer.MAX_VALUE;    //distance between actors that aren't connected
+    private static final int MAGIC = 0x424C4D4B;    //"BLMK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int MAX_DEPTH = 254;       //deepest depth a byte holds; deeper actors store it as "at least this"
+    private static final byte NOT_REACHED = (byte) 0xFF;
+    private static final Metrics.Op DISTANCE = Metrics.op("landmark distance");
+
+    private final CompactActorGraph graph;  //graph to search for exact answers
+    private final ByteBuffer data;          //the whole index, either memory-mapped or freshly computed on heap
+    private final int numActors;
+    private final int k;                    //number of landmarks
+    private final int[] landmarks;          //landmark -> dense actor id
+    private final int depthsAt;             //byte offset of the depths
+    private final ScratchPool<Search> searches;
+
+    /**
+     * Construct an oracle over a buffer that holds the whole file layout
+     * @param graph Graph the depths came from
+     * @param data  Buffer positioned anywhere; absolute reads are used throughout
+     */
+    private LandmarkOracle(CompactActorGraph graph, ByteBuffer data){
+        this.graph = graph;
+        this.data = data;
+        numActors = data.getInt(16);
+        k = data.getInt(20);
+        landmarks = new int[k];
+        for(int l = 0; l < k; l++) landmarks[l] = data.getInt(HEADER_BYTES + 4 * l);
+        depthsAt = HEADER_BYTES + 4 * k;
+        searches = new ScratchPool<>(() -> new Search(graph.numVertices()));
+    }
+
+    /**
+     * Pick landmarks and run a BFS from each of them in parallel
+     * Landmarks are the highest-degree actors, skipping any actor next to one already picked so they spread out
+     * @param graph         CSR graph
+     * @param k             Number of landmarks (fewer if the graph doesn't have that many actors)
+     * @param checksum      Checksum of the input files the graph came from
+     * @param parallelism   Number of worker threads
+     * @return              The freshly computed (unsaved) oracle
+     */
+    public static LandmarkOracle compute(CompactActorGraph graph, int k, long checksum, int parallelism){
+        int n = graph.numVertices();
+        k = Math.min(k, n);
+        if((long) n * k > Integer.MAX_VALUE - HEADER_BYTES - 4L * k) throw new IllegalArgumentException("Too many landmarks for " + n + " actors");
+        int[] landmarks = pickLandmarks(graph, k);
+        k = landmarks.length;
+        ByteBuffer data = ByteBuffer.allocate(HEADER_BYTES + 4 * k + n * k);
+        data.putInt(MAGIC).putInt(VERSION).putLong(checksum).putInt(n).putInt(k);
+        for(int v: landmarks) data.putInt(v);
+        byte[] depths = data.array();
+        int depthsAt = data.position();
+        ThreadLocal<BFSEngine> engines = ThreadLocal.withInitial(() -> new BFSEngine(graph));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new LandmarkTask(0, k, landmarks, engines, depths, depthsAt));
+        } finally {
+            pool.shutdown();
+        }
+        data.position(0);
+        return new LandmarkOracle(graph, data);
+    }
+
+    /**
+     * Highest-degree actors, skipping the neighbors of ones already picked
+     * @param graph CSR graph
+     * @param k     Number wanted
+     * @return      Dense ids of up to k landmarks
+     */
+    private static int[] pickLandmarks(CompactActorGraph graph, int k){
+        int n = graph.numVertices();
+        int[] byDegree = new DegreeIndex(graph).topK(n);
+        boolean[] covered = new boolean[n];     //landmarks and their co-stars
+        boolean[] picked = new boolean[n];
+        IntList landmarks = new IntList(k);
+        int[] offsets = graph.offsets(), neighbors = graph.neighbors();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraNext = graph.extraNext();
+        //highest degree first; if spreading them out leaves too few, top up from the covered ones in a second pass
+        for(int pass = 0; pass < 2 && landmarks.size() < k; pass++){
+            for(int i = 0; i < n && landmarks.size() < k; i++){
+                int v = byDegree[i];
+                if(picked[v] || (pass == 0 && covered[v])) continue;
+                picked[v] = covered[v] = true;
+                landmarks.add(v);
+                for(int slot = offsets[v]; slot < offsets[v + 1]; slot++) covered[neighbors[slot]] = true;
+                for(int link = extraHead[v]; link != -1; link = extraNext[link]) covered[extraNeighbors[link]] = true;
+            }
+        }
+        return landmarks.toArray();
+    }
+
+    /**
+     * Fork/join task over a range of landmarks, one BFS each, writing its depths into the shared byte array
+     */
+    @SuppressWarnings("serial")
+    private static class LandmarkTask extends RecursiveAction {
+        private final int lo, hi;   //landmarks lo ... hi-1
+        private final int[] landmarks;
+        private final ThreadLocal<BFSEngine> engines;
+        private final byte[] depths;
+        private final int depthsAt;
+
+        LandmarkTask(int lo, int hi, int[] landmarks, ThreadLocal<BFSEngine> engines, byte[] depths, int depthsAt){
+            this.lo = lo;
+            this.hi = hi;
+            this.landmarks = landmarks;
+            this.engines = engines;
+            this.depths = depths;
+            this.depthsAt = depthsAt;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi <= lo) return;
+            if(hi - lo > 1){
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new LandmarkTask(lo, mid, landmarks, engines, depths, depthsAt), new LandmarkTask(mid, hi, landmarks, engines, depths, depthsAt));
+                return;
+            }
+            int k = landmarks.length;
+            int n = (depths.length - depthsAt) / k;
+            int[] depth = engines.get().run(landmarks[lo]).getDepth();
+            for(int v = 0; v < n; v++){
+                depths[depthsAt + v * k + lo] = depth[v] == -1 ? NOT_REACHED : (byte) Math.min(depth[v], MAX_DEPTH);
+            }
+        }
+    }
+
+    /**
+     * Memory-map a saved oracle, as long as it was built from the current input files
+     * @param graph     Graph to search for exact answers
+     * @param path      Index file
+     * @param checksum  Checksum of the current input files (KevinBacon.inputChecksum)
+     * @return          The oracle, or null if it's missing, unreadable or stale
+     */
+    public static LandmarkOracle load(CompactActorGraph graph, String path, long checksum){
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+            if(channel.size() < HEADER_BYTES) return null;
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            //the mapping stays valid after the channel is closed
+            if(data.getInt(0) != MAGIC || data.getInt(4) != VERSION || data.getLong(8) != checksum || data.getInt(16) != graph.numVertices()) return null;
+            int k = data.getInt(20);
+            if(channel.size() != HEADER_BYTES + 4L * k + (long) graph.numVertices() * k) return null;
+            return new LandmarkOracle(graph, data);
+        } catch (NoSuchFileException e){
+            return null;
+        } catch (IOException e){
+            System.err.println("Cannot read landmark index "+path+"\n"+e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the oracle out so the next session can map it instead of recomputing
+     * @param path  File to write (replaced if it exists)
+     */
+    public void save(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer out = data.duplicate();
+            out.position(0);
+            while(out.hasRemaining()) channel.write(out);
+        }
+    }
+
+    //standard getters
+    public int numLandmarks() { return k; }
+    public int landmark(int l) { return landmarks[l]; }
+
+    /**
+     * Depth of an actor from a landmark
+     * @param v Dense actor id
+     * @param l Landmark number
+     * @return  Separation (MAX_DEPTH meaning at least that), or -1 if they aren't connected
+     */
+    private int depth(int v, int l){
+        byte d = data.get(depthsAt + v * k + l);
+        return d == NOT_REACHED ? -1 : d & 0xFF;
+    }
+
+    /**
+     * Lower bound on the separation of two actors
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  Separation is at least this; UNREACHABLE if a landmark shows they're in different components
+     */
+    public int lowerBound(int a, int b){
+        if(a == b) return 0;
+        int lower = 1;
+        for(int l = 0; l < k; l++){
+            int da = depth(a, l), db = depth(b, l);
+            //a landmark that reaches exactly one of them proves they aren't connected
+            if((da == -1) != (db == -1)) return UNREACHABLE;
+            if(da == -1 || (da == MAX_DEPTH && db == MAX_DEPTH)) continue;
+            lower = Math.max(lower, Math.abs(da - db));
+        }
+        return lower;
+    }
+
+    /**
+     * Upper bound on the separation of two actors
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  Separation is at most this; UNREACHABLE if no landmark reaches both (so there's no bound)
+     */
+    public int upperBound(int a, int b){
+        if(a == b) return 0;
+        int upper = UNREACHABLE;
+        for(int l = 0; l < k; l++){
+            int da = depth(a, l), db = depth(b, l);
+            if(da == -1 || db == -1 || da == MAX_DEPTH || db == MAX_DEPTH) continue;
+            upper = Math.min(upper, da + db);
+        }
+        return upper;
+    }
+
+    /**
+     * Exact separation of two actors: straight from the bounds when they meet, and from a pruned bidirectional BFS
+     * when they don't
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  Separation, or UNREACHABLE if they aren't connected
+     */
+    public int distance(int a, int b){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        int lower = lowerBound(a, b), upper = upperBound(a, b);
+        int answer;
+        int visited = 0;
+        if(lower == upper || lower == UNREACHABLE) answer = lower;
+        else {
+            Search search = searches.acquire();
+            try{
+                answer = search.run(a, b, upper);
+                visited = search.visited;
+            } finally {
+                searches.release(search);
+            }
+        }
+        DISTANCE.record(start, allocated, visited);
+        return answer;
+    }
+
+    /**
+     * Scratch for one bidirectional search at a time
+     */
+    private class Search {
+        private int[] stamp;            //actor -> search number that last reached it
+        private int[] side;             //actor -> 0 if reached from a, 1 if from b
+        private int[] dist;             //actor -> separation from the end that reached it
+        private final int[][] frontier = new int[2][];
+        private final int[] frontierSize = new int[2];
+        private int[] next;
+        private int query;
+        int visited;                    //actors reached by the last search
+
+        Search(int n){
+            stamp = new int[n];
+            side = new int[n];
+            dist = new int[n];
+            frontier[0] = new int[n];
+            frontier[1] = new int[n];
+            next = new int[n];
+        }
+
+        /**
+         * Bidirectional BFS that only has to beat an upper bound
+         * @param a     Dense id of one actor
+         * @param b     Dense id of the other actor
+         * @param best  Upper bound on the separation (UNREACHABLE if there isn't one)
+         * @return      The separation, or UNREACHABLE
+         */
+        int run(int a, int b, int best){
+            int n = graph.numVertices();
+            if(n > stamp.length){
+                stamp = Arrays.copyOf(stamp, n);
+                side = Arrays.copyOf(side, n);
+                dist = Arrays.copyOf(dist, n);
+                frontier[0] = new int[n];
+                frontier[1] = new int[n];
+                next = new int[n];
+            }
+            if(++query == 0){
+                Arrays.fill(stamp, 0);
+                query = 1;
+            }
+            int[] ends = {a, b};
+            int[] level = new int[2];   //depth of each side's frontier
+            for(int s = 0; s < 2; s++){
+                stamp[ends[s]] = query;
+                side[ends[s]] = s;
+                dist[ends[s]] = 0;
+                frontier[s][0] = ends[s];
+                frontierSize[s] = 1;
+            }
+            visited = 2;
+            int[] offsets = graph.offsets(), neighbors = graph.neighbors();
+            int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraNext = graph.extraNext();
+            //anything not found yet is at least level[0] + level[1] + 1 long, so stop once that can't beat the best
+            while(frontierSize[0] > 0 && frontierSize[1] > 0 && level[0] + level[1] + 1 < best){
+                int s = frontierSize[0] <= frontierSize[1] ? 0 : 1;
+                int far = ends[1 - s];
+                int nextDist = level[s] + 1;
+                int nextSize = 0;
+                int[] curr = frontier[s];
+                for(int i = 0; i < frontierSize[s]; i++){
+                    int u = curr[i];
+                    for(int slot = offsets[u], link = extraHead[u]; slot < offsets[u + 1] || link != -1; ){
+                        int w;
+                        if(slot < offsets[u + 1]) w = neighbors[slot++];
+                        else {
+                            w = extraNeighbors[link];
+                            link = extraNext[link];
+                        }
+                        if(stamp[w] != query){
+                            stamp[w] = query;
+                            side[w] = s;
+                            dist[w] = nextDist;
+                            visited++;
+                            //an actor whose bound to the far end can't beat the best is marked but never expanded
+                            int bound = w < numActors ? lowerBound(w, far) : 1;
+                            if(bound != UNREACHABLE && nextDist + bound < best) next[nextSize++] = w;
+                        } else if(side[w] != s){
+                            best = Math.min(best, dist[u] + 1 + dist[w]);
+                        }
+                    }
+                }
+                System.arraycopy(next, 0, curr, 0, nextSize);
+                frontierSize[s] = nextSize;
+                level[s] = nextDist;
+            }
+            return best;
+        }
+    }
+}
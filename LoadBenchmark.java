@@ -0,0 +1,30 @@
+import java.io.IOException;
+
+/**
+ * Benchmark driver for startup: compares the original readLine/split loader plus createGraph against the streaming
+ * BaconLoader plus the CSR graph builder, in time per load and peak heap, on the bacon/ files
+ */
+public class LoadBenchmark {
+
+    public static void main(String[] args){
+        //peak heap first, while the heap is still empty
+        Bench.peakHeap("text maps + createGraph", () -> new KevinBacon().createGraph());
+        Bench.peakHeap("BaconLoader + CSR graph", LoadBenchmark::streamingLoad);
+        double text = Bench.time("text maps + createGraph", 2, 5, () -> new KevinBacon().createGraph());
+        double streaming = Bench.time("BaconLoader + CSR graph", 2, 5, LoadBenchmark::streamingLoad);
+        System.out.printf("    speedup %.2fx%n", text / streaming);
+    }
+
+    /**
+     * Load the input files the streaming way
+     */
+    private static void streamingLoad(){
+        try{
+            BaconLoader loader = new BaconLoader();
+            loader.load(KevinBacon.ACTORS_FILE, KevinBacon.MOVIES_FILE, KevinBacon.MOVIE_ACTORS_FILE);
+            loader.buildGraph();
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values, with no boxing and no per-entry objects
+ * Linear probing over power-of-two tables that double once they're half full (same scheme as IntIntHashMap)
+ */
+public class LongIntHashMap {
+    private static final long FREE = Long.MIN_VALUE;    //marks an empty slot, so it can't be used as a key
+
+    private long[] keys;    //slot -> key, or FREE
+    private int[] values;   //slot -> value for the key in that slot
+    private int size;       //number of keys in the map
+    private int mask;       //table length - 1
+
+    /**
+     * Construct an empty map
+     * @param expected  Number of keys expected, to size the table up front
+     */
+    public LongIntHashMap(int expected){
+        int capacity = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Spread the key's bits (both halves of a packed pair matter) so nearby keys don't cluster in the table
+     * @param key   Key to hash
+     * @return      Starting slot for the key
+     */
+    private int slot(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Look up a key
+     * @param key           Key to find
+     * @param missingValue  What to return if the key isn't in the map
+     * @return              The key's value, or missingValue
+     */
+    public int get(long key, int missingValue){
+        for(int i = slot(key); ; i = (i + 1) & mask){
+            if(keys[i] == key) return values[i];
+            if(keys[i] == FREE) return missingValue;
+        }
+    }
+
+    /**
+     * Add or replace a key's value
+     * @param key   Key to set (anything but Long.MIN_VALUE)
+     * @param value Value for the key
+     */
+    public void put(long key, int value){
+        if(key == FREE) throw new IllegalArgumentException("Long.MIN_VALUE can't be used as a key");
+        int i = slot(key);
+        while(keys[i] != FREE && keys[i] != key) i = (i + 1) & mask;
+        if(keys[i] == FREE){
+            keys[i] = key;
+            if(++size * 2 > keys.length){
+                values[i] = value;
+                grow();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    /**
+     * Double the table and rehash every key into it
+     */
+    private void grow(){
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new int[2 * oldKeys.length];
+        Arrays.fill(keys, FREE);
+        mask = keys.length - 1;
+        for(int j = 0; j < oldKeys.length; j++){
+            if(oldKeys[j] == FREE) continue;
+            int i = slot(oldKeys[j]);
+            while(keys[i] != FREE) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    public int size() { return size; }
+}
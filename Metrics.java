@@ -0,0 +1,231 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Low-overhead metrics for the hot paths: per operation counts, latency histograms, vertices visited and bytes
+ * allocated, printable with the game's 'stats' command and exported over JMX (bacon:type=Metrics,name=...)
+ * Everything is lock-free (LongAdders and an atomic bucket array), so the server's sessions can record at the same
+ * time. Turned off with -Dbacon.metrics=false, in which case start() returns 0 and record() returns straight away;
+ * ENABLED is a static final, so the JIT drops the checks and the calls cost next to nothing
+ *
+ * Usage around an operation:
+ *   long start = Metrics.start(), allocated = Metrics.allocated();
+ *   ...
+ *   OP.record(start, allocated, visited);
+ */
+public class Metrics {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("bacon.metrics", "true"));
+    private static final String JMX_DOMAIN = "bacon";
+
+    private static final Map<String, Op> ops = new ConcurrentSkipListMap<>();   //every operation by name, sorted for printing
+    private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+    /**
+     * Thread allocation counter from the JVM, if it has one and it's turned on
+     * @return  ThreadMXBean that counts allocated bytes, or null
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter(){
+        if(!ENABLED) return null;
+        try{
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled() ? bean : null;
+        } catch (ClassCastException e){
+            return null;
+        }
+    }
+
+    /**
+     * Timestamp to pass to record() when the operation finishes
+     * @return  System.nanoTime(), or 0 when metrics are off
+     */
+    public static long start(){
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Bytes allocated by the calling thread so far, to pass to record() when the operation finishes
+     * (work handed to other threads, like the parallel rankings, isn't counted)
+     * @return  Allocated bytes, or 0 when metrics are off or the JVM can't count them
+     */
+    public static long allocated(){
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The operation with a name, registering it (and its MBean) the first time it's asked for
+     * @param name  Name of the operation, e.g. "bfs" or "command u"
+     * @return      Its metrics
+     */
+    public static Op op(String name){
+        Op op = ops.get(name);
+        return op != null ? op : ops.computeIfAbsent(name, Op::new);
+    }
+
+    /**
+     * Table of every operation that has run at least once
+     * @return  One line per operation with count, latency percentiles, visited and allocated per call
+     */
+    public static String report(){
+        if(!ENABLED) return "Metrics are off (run with -Dbacon.metrics=true to turn them on)\n";
+        StringBuilder sb = new StringBuilder(String.format("%-22s %9s %10s %10s %10s %10s %12s %12s%n",
+                "operation", "count", "mean ms", "p50 ms", "p99 ms", "max ms", "visited/op", "KB/op"));
+        for(Op op: ops.values()){
+            if(op.getCount() == 0) continue;
+            sb.append(String.format("%-22s %9d %10.3f %10.3f %10.3f %10.3f %12.1f %12.1f%n", op.name, op.getCount(), op.getMeanMillis(),
+                    op.getP50Millis(), op.getP99Millis(), op.getMaxMillis(), op.getVisitedPerOp(), op.getBytesPerOp() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Clear every operation's counts (the operations stay registered)
+     */
+    public static void reset(){
+        for(Op op: ops.values()) op.reset();
+    }
+
+    /**
+     * What JMX shows of an operation
+     */
+    public interface OpMBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+        long getVerticesVisited();
+        long getBytesAllocated();
+        void reset();
+    }
+
+    /**
+     * Metrics of one kind of operation
+     * Latencies go in a log-linear histogram like HdrHistogram's: 16 buckets per power of two of nanoseconds, so every
+     * percentile is within about 6% of the true value, in a fixed 1024 counters however many operations run
+     */
+    public static class Op implements OpMBean {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;  //buckets per power of two
+        private static final int BUCKETS = 64 * SUB;
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);   //latency histogram
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Construct an operation and export it over JMX
+         * @param name  Name of the operation
+         */
+        private Op(String name){
+            this.name = name;
+            if(!ENABLED) return;
+            try{
+                ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, OpMBean.class), objectName);
+            } catch (JMException e){
+                System.err.println("Cannot export metrics for " + name + " over JMX\n" + e.getMessage());
+            }
+        }
+
+        /**
+         * Record one finished operation
+         * @param start     Metrics.start() from when it began
+         * @param allocated Metrics.allocated() from when it began
+         * @param visited   Vertices it visited (or whatever it worked through, e.g. records loaded)
+         */
+        public void record(long start, long allocated, long visited){
+            if(!ENABLED) return;
+            long nanos = Math.max(0, System.nanoTime() - start);
+            buckets.getAndIncrement(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            this.visited.add(visited);
+            if(threads != null) bytes.add(Metrics.allocated() - allocated);
+        }
+
+        /**
+         * Histogram bucket of a latency: exact below 2 * SUB, then SUB buckets for every power of two
+         * @param nanos Latency
+         * @return      Bucket index
+         */
+        private static int bucket(long nanos){
+            if(nanos < SUB) return (int) nanos;
+            int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+            return (shift + 1) * SUB + (int) (nanos >>> shift) - SUB;
+        }
+
+        /**
+         * Largest latency that goes in a bucket
+         * @param bucket    Bucket index
+         * @return          Nanoseconds
+         */
+        private static long highestIn(int bucket){
+            if(bucket < SUB) return bucket;
+            int shift = bucket / SUB - 1;
+            return ((long) (bucket % SUB + SUB + 1) << shift) - 1;
+        }
+
+        /**
+         * Latency at a percentile, from the histogram
+         * @param percentile    Between 0 and 100
+         * @return              Milliseconds (the top of the bucket the percentile falls in, capped at the max seen)
+         */
+        public double percentileMillis(double percentile){
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for(int b = 0; b < BUCKETS; b++) total += counts[b] = buckets.get(b);
+            if(total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for(int b = 0; b < BUCKETS; b++){
+                seen += counts[b];
+                if(seen >= rank) return Math.min(highestIn(b), maxNanos.get()) / 1e6;
+            }
+            return maxNanos.get() / 1e6;
+        }
+
+        //the JMX attributes
+        public String getName() { return name; }
+        @Override
+        public long getCount() { return count.sum(); }
+        @Override
+        public double getMeanMillis() { long n = getCount(); return n == 0 ? 0 : totalNanos.sum() / 1e6 / n; }
+        @Override
+        public double getP50Millis() { return percentileMillis(50); }
+        @Override
+        public double getP99Millis() { return percentileMillis(99); }
+        @Override
+        public double getP999Millis() { return percentileMillis(99.9); }
+        @Override
+        public double getMaxMillis() { return maxNanos.get() / 1e6; }
+        @Override
+        public long getVerticesVisited() { return visited.sum(); }
+        @Override
+        public long getBytesAllocated() { return bytes.sum(); }
+        public double getVisitedPerOp() { long n = getCount(); return n == 0 ? 0 : (double) visited.sum() / n; }
+        public double getBytesPerOp() { long n = getCount(); return n == 0 ? 0 : (double) bytes.sum() / n; }
+
+        @Override
+        public void reset(){
+            for(int b = 0; b < BUCKETS; b++) buckets.set(b, 0);
+            count.reset();
+            totalNanos.reset();
+            visited.reset();
+            bytes.reset();
+            maxNanos.reset();
+        }
+    }
+}
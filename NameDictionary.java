@@ -0,0 +1,182 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of names (actors or movies) stored once each as UTF-8 bytes in one contiguous buffer
+ * Every distinct name gets the next int id, and an open-addressing hash table of ids finds a name's id without any
+ * String keys, so the rest of the code can pass ints around and only decode a name when it's printed
+ */
+public class NameDictionary {
+    private byte[] bytes = new byte[1 << 16];   //every name's UTF-8 bytes back to back
+    private int used;                           //bytes in use
+    private int[] offsets = new int[1025];      //name id -> start of its bytes (offsets[size] is the end of the last)
+    private int[] hashes = new int[1024];       //name id -> hash of its bytes
+    private int size;                           //number of names
+    private int[] table = new int[2048];        //hash slot -> name id + 1, or 0 if empty
+    private int mask = table.length - 1;
+
+    /**
+     * Construct an empty dictionary
+     */
+    public NameDictionary(){
+    }
+
+    /**
+     * Construct a dictionary from the raw arrays of an earlier one (as written out by a snapshot)
+     * @param bytes     UTF-8 bytes of every name back to back
+     * @param offsets   Name id -> start of its bytes, with one extra entry for the end of the last
+     * @param size      Number of names
+     */
+    public NameDictionary(byte[] bytes, int[] offsets, int size){
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.size = size;
+        used = offsets[size];
+        hashes = new int[Math.max(1, size)];
+        table = new int[Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1];
+        mask = table.length - 1;
+        for(int id = 0; id < size; id++){
+            hashes[id] = hash(bytes, offsets[id], offsets[id + 1]);
+            insert(id);
+        }
+    }
+
+    /**
+     * Construct a dictionary from every raw array of an earlier one, hash table included, so nothing is rehashed
+     * @param bytes     UTF-8 bytes of every name back to back
+     * @param offsets   Name id -> start of its bytes, with one extra entry for the end of the last
+     * @param hashes    Name id -> hash of its bytes
+     * @param table     Hash slot -> name id + 1, or 0 if empty (length a power of two)
+     * @param size      Number of names
+     */
+    public NameDictionary(byte[] bytes, int[] offsets, int[] hashes, int[] table, int size){
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.hashes = hashes;
+        this.table = table;
+        this.size = size;
+        used = offsets[size];
+        mask = table.length - 1;
+    }
+
+    /**
+     * FNV-1a hash of a range of bytes
+     * @param buf   Bytes to hash
+     * @param start Start of the range
+     * @param end   End of the range (exclusive)
+     * @return      Hash of the bytes
+     */
+    private static int hash(byte[] buf, int start, int end){
+        int h = 0x811C9DC5;
+        for(int i = start; i < end; i++){
+            h = (h ^ (buf[i] & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Find the id of a name given as a range of bytes
+     * @param buf   UTF-8 bytes of the name
+     * @param start Start of the name
+     * @param end   End of the name (exclusive)
+     * @param h     Hash of the name
+     * @return      The name's id, or -1 if it isn't in the dictionary
+     */
+    private int find(byte[] buf, int start, int end, int h){
+        int length = end - start;
+        for(int i = h & mask; table[i] != 0; i = (i + 1) & mask){
+            int id = table[i] - 1;
+            if(hashes[id] == h && offsets[id + 1] - offsets[id] == length
+                    && Arrays.equals(bytes, offsets[id], offsets[id + 1], buf, start, end)) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a name given as a range of bytes (e.g. straight out of a file buffer), or find it if it's already there
+     * @param buf   UTF-8 bytes of the name
+     * @param start Start of the name
+     * @param end   End of the name (exclusive)
+     * @return      Id of the name
+     */
+    public int add(byte[] buf, int start, int end){
+        int h = hash(buf, start, end);
+        int id = find(buf, start, end, h);
+        if(id != -1) return id;
+        //copy the bytes onto the end of the buffer, growing everything that's full
+        int length = end - start;
+        if(used + length > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, used + length));
+        System.arraycopy(buf, start, bytes, used, length);
+        used += length;
+        id = size++;
+        if(size + 1 > offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        if(size > hashes.length) hashes = Arrays.copyOf(hashes, 2 * hashes.length);
+        offsets[size] = used;
+        hashes[id] = h;
+        if(2 * size > table.length){
+            table = new int[2 * table.length];
+            mask = table.length - 1;
+            for(int i = 0; i < size; i++) insert(i);
+        } else {
+            insert(id);
+        }
+        return id;
+    }
+
+    /**
+     * Add a name, or find it if it's already there
+     * @param name  Name to add
+     * @return      Id of the name
+     */
+    public int add(String name){
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        return add(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Put an id into the first free slot of its hash chain
+     * @param id    Name id to insert
+     */
+    private void insert(int id){
+        int i = hashes[id] & mask;
+        while(table[i] != 0) i = (i + 1) & mask;
+        table[i] = id + 1;
+    }
+
+    /**
+     * Look up a name's id
+     * @param name  Name to look up
+     * @return      Its id, or -1 if it isn't in the dictionary
+     */
+    public int idOf(String name){
+        if(name == null) return -1;
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        return find(utf8, 0, utf8.length, hash(utf8, 0, utf8.length));
+    }
+
+    /**
+     * Decode a name (this is the only place Strings get made, so only call it when the name is needed)
+     * @param id    Name id
+     * @return      The name
+     */
+    public String name(int id){
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Trim the buffers down to what's used once loading is done
+     */
+    public void trim(){
+        bytes = Arrays.copyOf(bytes, used);
+        offsets = Arrays.copyOf(offsets, size + 1);
+        hashes = Arrays.copyOf(hashes, Math.max(1, size));
+    }
+
+    //getters for the raw arrays (for snapshots; don't modify them)
+    public int size() { return size; }
+    public byte[] bytes() { return bytes; }
+    public int[] offsets() { return offsets; }
+    public int byteSize() { return used; }
+    public int[] hashes() { return hashes; }
+    public int[] table() { return table; }
+}
@@ -0,0 +1,373 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Search index over actor names for suggestions when a command's name doesn't match anyone exactly
+ * Prefix lookups binary search an array of actor ids sorted by case-folded name, with the folded names kept as UTF-8
+ * bytes back to back (like NameDictionary) rather than as Strings, and compared a byte at a time. Fuzzy lookups use an
+ * inverted index from character trigrams to the actors whose names contain them: a name within k edits of the query
+ * shares all but at most 3k of the query's trigrams, so only the rarest few posting lists need scanning for
+ * candidates, and each candidate is checked with a Levenshtein distance that gives up as soon as it's over the bound
+ * Built once at load time; actors added to the graph later go in a small overlay (sorted ids for prefix lookups, and
+ * a full scan for fuzzy ones) until it's big enough that a fresh index is worth building. Lookups don't modify
+ * anything, so one index can be shared between threads as long as nothing is being added
+ */
+public class NameSearchIndex {
+    private static final int OVERLAY_SHARE = 16;    //rebuild once more than 1/OVERLAY_SHARE of the actors are in the overlay
+
+    private final CompactActorGraph graph;  //graph whose actors are indexed
+    private final byte[] folded;            //every actor's lowercased name as UTF-8, back to back
+    private final int[] foldedOffsets;      //actor v's folded name is folded[foldedOffsets[v]] ... folded[foldedOffsets[v+1]-1]
+    private final int[] sorted;             //actor ids in folded name order (unsigned byte order, which is code point order)
+    private final LongIntHashMap gramIds;   //packed trigram -> gram id
+    private final int[] postingOffsets;     //gram g's actors are postings[postingOffsets[g]] ... postings[postingOffsets[g+1]-1]
+    private final int[] postings;           //every gram's actor ids back to back, ascending within each gram
+    private final int baseActors;           //actors in the arrays above; the ones added since are in the overlay
+    private byte[] addedFolded = new byte[64];          //folded names of the added actors as UTF-8, back to back
+    private final IntList addedOffsets = new IntList(); //added actor baseActors+i's name starts at addedOffsets[i]
+    private final IntList addedSorted = new IntList();  //added actor ids in folded name order
+
+    /**
+     * Build the index for every actor in a graph
+     * @param graph CSR graph whose actor names to index
+     */
+    public NameSearchIndex(CompactActorGraph graph){
+        this.graph = graph;
+        int n = graph.numVertices();
+        baseActors = n;
+        addedOffsets.add(0);
+        byte[] bytes = new byte[Math.max(16, graph.getActorNames().byteSize())];
+        foldedOffsets = new int[n + 1];
+        for(int v = 0; v < n; v++){
+            byte[] name = fold(graph.nameOf(v)).getBytes(StandardCharsets.UTF_8);
+            int at = foldedOffsets[v];
+            if(at + name.length > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, at + name.length));
+            System.arraycopy(name, 0, bytes, at, name.length);
+            foldedOffsets[v + 1] = at + name.length;
+        }
+        folded = Arrays.copyOf(bytes, foldedOffsets[n]);
+        //sort the ids by folded name for prefix lookups
+        sorted = new int[n];
+        for(int v = 0; v < n; v++) sorted[v] = v;
+        sortByName(sorted, new int[n], 0, n);
+        //number the distinct trigrams and count each one's actors, then lay the postings out like a CSR graph
+        gramIds = new LongIntHashMap(4 * n);
+        IntList counts = new IntList();
+        long[] grams = new long[16];
+        for(int v = 0; v < n; v++){
+            String name = folded(v);
+            int size = trigrams(name, grams = ensure(grams, name));
+            for(int i = 0; i < size; i++){
+                int g = gramIds.get(grams[i], -1);
+                if(g == -1){
+                    g = counts.size();
+                    gramIds.put(grams[i], g);
+                    counts.add(0);
+                }
+                counts.set(g, counts.get(g) + 1);
+            }
+        }
+        postingOffsets = new int[counts.size() + 1];
+        for(int g = 0; g < counts.size(); g++) postingOffsets[g + 1] = postingOffsets[g] + counts.get(g);
+        postings = new int[postingOffsets[counts.size()]];
+        int[] fill = Arrays.copyOf(postingOffsets, counts.size());
+        for(int v = 0; v < n; v++){
+            String name = folded(v);
+            int size = trigrams(name, grams = ensure(grams, name));
+            for(int i = 0; i < size; i++) postings[fill[gramIds.get(grams[i], -1)]++] = v;
+        }
+    }
+
+    /**
+     * Case-fold a name so lookups ignore capitalization and stray spaces
+     * @param name  Name as typed or as stored
+     * @return      Trimmed, lowercased name
+     */
+    private static String fold(String name){
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Decode an actor's folded name (only for the few actors a lookup actually looks at)
+     * @param v Dense actor id
+     * @return  Trimmed, lowercased name
+     */
+    private String folded(int v){
+        return new String(bytes(v), start(v), end(v) - start(v), StandardCharsets.UTF_8);
+    }
+
+    //where an actor's folded name is: the base arrays, or the overlay for actors added since the build
+    private byte[] bytes(int v) { return v < baseActors ? folded : addedFolded; }
+    private int start(int v) { return v < baseActors ? foldedOffsets[v] : addedOffsets.get(v - baseActors); }
+    private int end(int v) { return v < baseActors ? foldedOffsets[v + 1] : addedOffsets.get(v - baseActors + 1); }
+
+    /**
+     * Index the actors added to the graph since this index was built (or last caught up), without rebuilding
+     * @return  false once the overlay is more than 1/OVERLAY_SHARE of the actors, when it's time to build a fresh index
+     */
+    public boolean addNewActors(){
+        for(int v = baseActors + addedOffsets.size() - 1; v < graph.numVertices(); v++){
+            byte[] name = fold(graph.nameOf(v)).getBytes(StandardCharsets.UTF_8);
+            int at = addedOffsets.get(addedOffsets.size() - 1);
+            if(at + name.length > addedFolded.length) addedFolded = Arrays.copyOf(addedFolded, Math.max(2 * addedFolded.length, at + name.length));
+            System.arraycopy(name, 0, addedFolded, at, name.length);
+            addedOffsets.add(at + name.length);
+            //insert after any equal names, so ties stay in id order
+            int lo = 0, hi = addedSorted.size();
+            while(lo < hi){
+                int mid = (lo + hi) >>> 1;
+                if(compare(addedSorted.get(mid), v) <= 0) lo = mid + 1;
+                else hi = mid;
+            }
+            addedSorted.add(0);
+            int[] ids = addedSorted.array();
+            System.arraycopy(ids, lo, ids, lo + 1, addedSorted.size() - 1 - lo);
+            ids[lo] = v;
+        }
+        return (long) addedSorted.size() * OVERLAY_SHARE <= graph.numVertices();
+    }
+
+    /**
+     * Compare an actor's folded name with some UTF-8 bytes
+     * @param v       Dense actor id
+     * @param key     UTF-8 bytes to compare with
+     * @param length  Compare only key[0] ... key[length-1]
+     * @return        Negative, zero or positive as the name sorts before, equal to or after the key
+     */
+    private int compare(int v, byte[] key, int length){
+        return Arrays.compareUnsigned(bytes(v), start(v), end(v), key, 0, length);
+    }
+
+    /**
+     * Compare two actors' folded names
+     * @param a Dense id of one actor
+     * @param b Dense id of the other actor
+     * @return  Negative, zero or positive as a's name sorts before, equal to or after b's
+     */
+    private int compare(int a, int b){
+        return Arrays.compareUnsigned(bytes(a), start(a), end(a), bytes(b), start(b), end(b));
+    }
+
+    /**
+     * Merge sort a range of actor ids by folded name, on primitive arrays so nothing is boxed (stable, so equal names
+     * stay in id order)
+     * @param ids   Ids to sort
+     * @param temp  Scratch array at least as long as ids
+     * @param lo    Start of the range
+     * @param hi    End of the range (exclusive)
+     */
+    private void sortByName(int[] ids, int[] temp, int lo, int hi){
+        if(hi - lo < 16){
+            //insertion sort for short ranges
+            for(int i = lo + 1; i < hi; i++){
+                int v = ids[i], j = i - 1;
+                while(j >= lo && compare(ids[j], v) > 0){
+                    ids[j + 1] = ids[j];
+                    j--;
+                }
+                ids[j + 1] = v;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sortByName(ids, temp, lo, mid);
+        sortByName(ids, temp, mid, hi);
+        if(compare(ids[mid - 1], ids[mid]) <= 0) return;
+        System.arraycopy(ids, lo, temp, lo, hi - lo);
+        for(int i = lo, j = mid, k = lo; k < hi; k++){
+            if(j >= hi || (i < mid && compare(temp[i], temp[j]) <= 0)) ids[k] = temp[i++];
+            else ids[k] = temp[j++];
+        }
+    }
+
+    /**
+     * Make sure a trigram buffer can hold every trigram of a name
+     * @param grams Current buffer
+     * @param name  Folded name
+     * @return      The buffer, or a bigger one
+     */
+    private static long[] ensure(long[] grams, String name){
+        return grams.length >= name.length() + 2 ? grams : new long[2 * (name.length() + 2)];
+    }
+
+    /**
+     * Pack the distinct trigrams of a name (padded with two spaces in front and one behind, so starts and ends of names
+     * count for more) into longs, three 16-bit chars each
+     * @param name  Folded name
+     * @param grams Buffer to fill, at least name length + 2 long
+     * @return      Number of distinct trigrams put in grams, sorted ascending
+     */
+    private static int trigrams(String name, long[] grams){
+        int length = name.length() + 3;
+        int size = 0;
+        for(int i = 0; i + 3 <= length; i++){
+            grams[size++] = ((long) charAt(name, i) << 32) | ((long) charAt(name, i + 1) << 16) | charAt(name, i + 2);
+        }
+        //a name with a repeated trigram only belongs in that gram's postings once
+        Arrays.sort(grams, 0, size);
+        int distinct = 0;
+        for(int i = 0; i < size; i++){
+            if(i == 0 || grams[i] != grams[i - 1]) grams[distinct++] = grams[i];
+        }
+        return distinct;
+    }
+
+    /**
+     * Character of a name padded with two spaces in front and one behind
+     * @param name  Folded name
+     * @param i     Position in the padded name
+     * @return      The padded name's char at i
+     */
+    private static char charAt(String name, int i){
+        return i < 2 || i - 2 >= name.length() ? ' ' : name.charAt(i - 2);
+    }
+
+    /**
+     * Actors whose names start with a prefix (ignoring case), in alphabetical order
+     * @param prefix    Start of the name
+     * @param limit     Most actors to return
+     * @return          Dense ids of up to limit matching actors
+     */
+    public int[] prefix(String prefix, int limit){
+        byte[] key = fold(prefix).getBytes(StandardCharsets.UTF_8);
+        int[] added = addedSorted.array();
+        int i = firstAtLeast(sorted, sorted.length, key), iEnd = sorted.length;
+        int j = firstAtLeast(added, addedSorted.size(), key), jEnd = addedSorted.size();
+        //every match follows the first name >= the prefix contiguously; merge the base and overlay runs in name order
+        IntList matches = new IntList();
+        while(matches.size() < limit){
+            boolean base = i < iEnd && startsWith(sorted[i], key);
+            boolean overlay = j < jEnd && startsWith(added[j], key);
+            if(!base && !overlay) break;
+            if(base && (!overlay || compare(sorted[i], added[j]) <= 0)) matches.add(sorted[i++]);
+            else matches.add(added[j++]);
+        }
+        return matches.toArray();
+    }
+
+    /**
+     * Binary search ids in folded name order for the first name that sorts at or after a key
+     * @param ids   Ids in folded name order
+     * @param n     Number of ids to search
+     * @param key   UTF-8 bytes of the folded key
+     * @return      Index of the first id whose name is >= the key (n if none is)
+     */
+    private int firstAtLeast(int[] ids, int n, byte[] key){
+        int lo = 0, hi = n;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(compare(ids[mid], key, key.length) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Whether an actor's folded name starts with some UTF-8 bytes
+     * @param v     Dense actor id
+     * @param key   Folded prefix as UTF-8
+     * @return      true if the name starts with the prefix
+     */
+    private boolean startsWith(int v, byte[] key){
+        int start = start(v);
+        return end(v) - start >= key.length && Arrays.equals(bytes(v), start, start + key.length, key, 0, key.length);
+    }
+
+    /**
+     * Actors whose names are within some number of edits of a query (ignoring case), closest first
+     * @param query         Name as typed
+     * @param maxDistance   Most insertions, deletions or substitutions allowed
+     * @param limit         Most actors to return
+     * @return              Dense ids of up to limit matching actors, by increasing edit distance then alphabetically
+     */
+    public int[] fuzzy(String query, int maxDistance, int limit){
+        String key = fold(query);
+        long[] grams = ensure(new long[16], key);
+        int size = trigrams(key, grams);
+        //posting lists of the query's trigrams that exist anywhere, rarest first
+        List<Integer> lists = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            int g = gramIds.get(grams[i], -1);
+            if(g != -1) lists.add(g);
+        }
+        lists.sort(Comparator.comparingInt(g -> postingOffsets[g + 1] - postingOffsets[g]));
+        //each edit breaks at most 3 trigrams, so a match shares at least size - 3k of them with the query, and must
+        //turn up in one of the rarest (size - (size - 3k) + 1) lists; when that bound is no help, use them all
+        int needed = size - 3 * maxDistance;
+        int scan = needed > 0 ? Math.min(lists.size(), size - needed + 1) : lists.size();
+        IntIntHashMap seen = new IntIntHashMap(64);
+        List<int[]> matches = new ArrayList<>();   //{distance, actor id}
+        for(int l = 0; l < scan; l++){
+            int g = lists.get(l);
+            for(int p = postingOffsets[g]; p < postingOffsets[g + 1]; p++){
+                int v = postings[p];
+                if(seen.get(v, 0) != 0) continue;
+                seen.put(v, 1);
+                int distance = distance(key, folded(v), maxDistance);
+                if(distance <= maxDistance) matches.add(new int[]{distance, v});
+            }
+        }
+        //the overlay has no trigram postings, so check all of it
+        for(int i = 0; i < addedSorted.size(); i++){
+            int v = addedSorted.get(i);
+            int distance = distance(key, folded(v), maxDistance);
+            if(distance <= maxDistance) matches.add(new int[]{distance, v});
+        }
+        matches.sort((o1, o2) -> o1[0] != o2[0] ? Integer.compare(o1[0], o2[0]) : compare(o1[1], o2[1]));
+        int[] result = new int[Math.min(limit, matches.size())];
+        for(int i = 0; i < result.length; i++) result[i] = matches.get(i)[1];
+        return result;
+    }
+
+    /**
+     * Levenshtein distance between two strings, giving up once it's sure to be over a bound
+     * @param a     First string
+     * @param b     Second string
+     * @param bound Largest distance worth computing exactly
+     * @return      The edit distance, or bound + 1 if it's more than bound
+     */
+    static int distance(String a, String b, int bound){
+        if(Math.abs(a.length() - b.length()) > bound) return bound + 1;
+        int[] prev = new int[b.length() + 1];
+        int[] curr = new int[b.length() + 1];
+        for(int j = 0; j <= b.length(); j++) prev[j] = j;
+        for(int i = 1; i <= a.length(); i++){
+            curr[0] = i;
+            int rowMin = curr[0];
+            for(int j = 1; j <= b.length(); j++){
+                int substitute = prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                curr[j] = Math.min(substitute, Math.min(prev[j], curr[j - 1]) + 1);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            //every later row is at least this row's minimum
+            if(rowMin > bound) return bound + 1;
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+        return Math.min(prev[b.length()], bound + 1);
+    }
+
+    /**
+     * Names to suggest for something that didn't match any actor: close misspellings first, then names it's the
+     * start of
+     * @param query Name as typed
+     * @param limit Most names to suggest
+     * @return      Suggested actor names (empty if nothing is close)
+     */
+    public List<String> suggest(String query, int limit){
+        int length = fold(query).length();
+        if(length == 0) return new ArrayList<>();
+        //allow about one typo per four characters
+        int maxDistance = Math.max(1, Math.min(3, length / 4));
+        LinkedHashSet<Integer> ids = new LinkedHashSet<>();
+        for(int v: fuzzy(query, maxDistance, limit)) ids.add(v);
+        for(int v: prefix(query, limit)){
+            if(ids.size() >= limit) break;
+            ids.add(v);
+        }
+        List<String> names = new ArrayList<>(ids.size());
+        for(int v: ids) names.add(graph.nameOf(v));
+        return names;
+    }
+}
@@ -0,0 +1,212 @@
+import java.util.*;
+
+/**
+ * Point-to-point path queries between any two actors by bidirectional BFS over a CompactActorGraph
+ * Grows one search from each end, always expanding whichever frontier is smaller, and stops as soon as the two
+ * searches meet, so a typical query only touches a small part of the graph instead of building a whole BFS tree
+ * Not thread-safe: the scratch arrays are reused between queries, so give each thread its own PathQuery
+ */
+public class PathQuery {
+    private static final Metrics.Op PATH = Metrics.op("path");
+    private final CompactActorGraph graph;  //graph to search
+    private int[] stamp;            //actor -> query number that last visited it (so nothing needs clearing between queries)
+    private int[] side;             //actor -> 0 if reached from the start, 1 if from the end (valid when stamped)
+    private int[] dist;             //actor -> separation from the end of the search that reached it
+    private int[] parent;           //actor -> actor one step closer to the end that reached it (-1 at the ends)
+    private int[] parentEdge;       //actor -> edge id to that parent
+    private final int[][] frontier; //current frontier of each side
+    private final int[] frontierSize;
+    private int[] next;             //scratch for the next frontier being built
+    private int nextSize;           //actors in next
+    private int query;              //number of the current query
+    private int visited;            //actors touched by the last query
+    private int best, meetNear, meetFar, meetEdge;  //shortest meeting found in the level being expanded
+
+    /**
+     * Path between two actors, with the shared movies for each hop
+     */
+    public static class Path {
+        private final List<String> actors;          //actors from the start to the end
+        private final List<Set<String>> movies;     //movies.get(i) are shared by actors.get(i) and actors.get(i+1)
+
+        Path(List<String> actors, List<Set<String>> movies){
+            this.actors = actors;
+            this.movies = movies;
+        }
+
+        //standard getters
+        public List<String> getActors() { return actors; }
+        public List<Set<String>> getMovies() { return movies; }
+        public int separation() { return actors.size() - 1; }
+
+        /**
+         * One line per hop, in the same wording as the 'p' command
+         * @return  String with a line for every hop
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < movies.size(); i++){
+                sb.append(actors.get(i)).append(" appeared in ").append(movies.get(i)).append(" with ").append(actors.get(i + 1)).append("\n");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Construct a query object (and its scratch arrays) for a graph
+     * @param graph CSR graph to search
+     */
+    public PathQuery(CompactActorGraph graph){
+        this.graph = graph;
+        int n = graph.numVertices();
+        stamp = new int[n];
+        side = new int[n];
+        dist = new int[n];
+        parent = new int[n];
+        parentEdge = new int[n];
+        frontier = new int[][]{new int[n], new int[n]};
+        frontierSize = new int[2];
+        next = new int[n];
+    }
+
+    /**
+     * Find a shortest path between two actors
+     * @param from  Dense id of the start actor
+     * @param to    Dense id of the end actor
+     * @return      The path from start to end, or null if they aren't connected
+     */
+    public Path find(int from, int to){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        Path path = search(from, to);
+        PATH.record(start, allocated, visited);
+        return path;
+    }
+
+    /**
+     * Run the bidirectional search for find
+     * @param from  Dense id of the start actor
+     * @param to    Dense id of the end actor
+     * @return      The path from start to end, or null if they aren't connected
+     */
+    private Path search(int from, int to){
+        //actors may have been added to the graph since the last query
+        int n = graph.numVertices();
+        if(n > stamp.length){
+            stamp = Arrays.copyOf(stamp, n);
+            side = Arrays.copyOf(side, n);
+            dist = Arrays.copyOf(dist, n);
+            parent = Arrays.copyOf(parent, n);
+            parentEdge = Arrays.copyOf(parentEdge, n);
+            frontier[0] = new int[n];
+            frontier[1] = new int[n];
+            next = new int[n];
+        }
+        if(++query == 0){
+            //the counter wrapped around, so old stamps could look current
+            Arrays.fill(stamp, 0);
+            query = 1;
+        }
+        visit(from, 0, 0, -1, -1);
+        visit(to, 1, 0, -1, -1);
+        visited = from == to ? 1 : 2;
+        if(from == to) return buildPath(from, -1, -1);
+        frontier[0][0] = from;
+        frontier[1][0] = to;
+        frontierSize[0] = frontierSize[1] = 1;
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] edgeIds = graph.edgeIds();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraEdgeIds = graph.extraEdgeIds(), extraNext = graph.extraNext();
+        while(frontierSize[0] > 0 && frontierSize[1] > 0){
+            //expand the smaller frontier by one whole level
+            int s = frontierSize[0] <= frontierSize[1] ? 0 : 1;
+            int[] curr = frontier[s];
+            int size = frontierSize[s];
+            nextSize = 0;
+            best = Integer.MAX_VALUE;
+            meetNear = meetFar = meetEdge = -1;
+            for(int i = 0; i < size; i++){
+                int u = curr[i];
+                for(int slot = offsets[u]; slot < offsets[u + 1]; slot++) step(u, neighbors[slot], edgeIds[slot], s);
+                for(int link = extraHead[u]; link != -1; link = extraNext[link]) step(u, extraNeighbors[link], extraEdgeIds[link], s);
+            }
+            if(meetNear != -1){
+                return s == 0 ? buildPath(meetNear, meetFar, meetEdge) : buildPath(meetFar, meetNear, meetEdge);
+            }
+            System.arraycopy(next, 0, curr, 0, nextSize);
+            frontierSize[s] = nextSize;
+        }
+        return null;
+    }
+
+    /**
+     * Look across one edge while expanding a frontier: an unvisited actor joins the next frontier, and an actor the
+     * other side already reached is a place the searches meet
+     * @param u     Actor in the frontier
+     * @param w     Its neighbor
+     * @param edge  Edge id between them
+     * @param s     Side being expanded
+     */
+    private void step(int u, int w, int edge, int s){
+        if(stamp[w] != query){
+            visit(w, s, dist[u] + 1, u, edge);
+            next[nextSize++] = w;
+            visited++;
+        } else if(side[w] != s && dist[u] + 1 + dist[w] < best){
+            //the searches meet; finish the level in case another meeting point is closer to the other end
+            best = dist[u] + 1 + dist[w];
+            meetNear = u;
+            meetFar = w;
+            meetEdge = edge;
+        }
+    }
+
+    /**
+     * Number of actors touched by the last query (both searches together)
+     * @return  Count of visited actors
+     */
+    public int getVisited() { return visited; }
+
+    /**
+     * Mark an actor as reached by one side of the search
+     * @param v Dense id of the actor
+     * @param s Side that reached it (0 start, 1 end)
+     * @param d Its separation from that side's end
+     * @param p Actor one step closer to that end (-1 for the end itself)
+     * @param e Edge id to p (-1 for the end itself)
+     */
+    private void visit(int v, int s, int d, int p, int e){
+        stamp[v] = query;
+        side[v] = s;
+        dist[v] = d;
+        parent[v] = p;
+        parentEdge[v] = e;
+    }
+
+    /**
+     * Stitch the two half-paths together at the edge where the searches met
+     * @param startSide Actor on the start's side of the meeting edge
+     * @param endSide   Actor on the end's side of the meeting edge (-1 if the start is the end)
+     * @param meetEdge  Edge id between them
+     * @return          Path from start to end
+     */
+    private Path buildPath(int startSide, int endSide, int meetEdge){
+        LinkedList<String> actors = new LinkedList<>();
+        LinkedList<Set<String>> movies = new LinkedList<>();
+        //walk from the meeting point back to the start, adding to the front
+        for(int v = startSide; v != -1; v = parent[v]){
+            actors.addFirst(graph.nameOf(v));
+            if(parent[v] != -1) movies.addFirst(graph.movieLabel(parentEdge[v]));
+        }
+        //then from the meeting point on to the end
+        if(endSide != -1){
+            movies.addLast(graph.movieLabel(meetEdge));
+            for(int v = endSide; v != -1; v = parent[v]){
+                actors.addLast(graph.nameOf(v));
+                if(parent[v] != -1) movies.addLast(graph.movieLabel(parentEdge[v]));
+            }
+        }
+        return new Path(new ArrayList<>(actors), new ArrayList<>(movies));
+    }
+}
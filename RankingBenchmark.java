@@ -0,0 +1,21 @@
+/**
+ * Benchmark driver for SeparationRanking: times the all-sources ranking with 1, 2, 4, ... worker threads on the
+ * bacon/ files and prints the speedup over a single thread
+ */
+public class RankingBenchmark {
+
+    public static void main(String[] args){
+        KevinBacon kb = new KevinBacon();
+        kb.createCompactGraph();
+        CompactActorGraph graph = kb.getCompactGraph();
+        System.out.println(graph);
+        int cores = Runtime.getRuntime().availableProcessors();
+        double single = 0;
+        for(int threads = 1; threads <= cores; threads = threads == cores ? cores + 1 : Math.min(2 * threads, cores)){
+            SeparationRanking ranking = new SeparationRanking(graph, threads);
+            double ms = Bench.time("rank, " + threads + " thread(s)", 1, 3, () -> ranking.rank(null));
+            if(threads == 1) single = ms;
+            System.out.printf("    speedup %.2fx%n", single / ms);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable scratch objects (BFSEngines, PathQueries) that aren't thread-safe themselves
+ * A thread takes one out, uses it, and puts it back, so there are only ever as many as there are concurrent users
+ * instead of one per session or one per query
+ * The number out at once is capped (at the number of cores by default), so a burst of sessions waits for scratch
+ * instead of each allocating graph-sized arrays; a thread must release one object before acquiring another
+ * @param <T>   Type of the scratch object
+ */
+public class ScratchPool<T> {
+    private final ConcurrentLinkedQueue<T> free = new ConcurrentLinkedQueue<>();   //objects not in use
+    private final Supplier<T> factory;  //makes a new object when the pool is empty
+    private final Semaphore permits;    //one per object that may be out at once
+
+    /**
+     * Construct an empty pool that hands out at most one object per core at a time
+     * @param factory   Makes a new scratch object when every existing one is in use
+     */
+    public ScratchPool(Supplier<T> factory){
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct an empty pool
+     * @param factory   Makes a new scratch object when every existing one is in use
+     * @param limit     Most objects out at once (and so ever made)
+     */
+    public ScratchPool(Supplier<T> factory, int limit){
+        this.factory = factory;
+        permits = new Semaphore(Math.max(1, limit));
+    }
+
+    /**
+     * Take a scratch object out of the pool, waiting while the limit is out and making one if none are free
+     * @return  Object for this thread's exclusive use until it's released
+     */
+    public T acquire(){
+        permits.acquireUninterruptibly();
+        T scratch = free.poll();
+        if(scratch != null) return scratch;
+        try{
+            return factory.get();
+        } catch (RuntimeException | Error e){
+            //nothing was taken out, so give the permit back
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Put a scratch object back for someone else to use
+     * @param scratch   Object from acquire, which the caller must not touch again
+     */
+    public void release(T scratch){
+        free.add(scratch);
+        permits.release();
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Whole-graph separation statistics: the distribution of separations over every pair of connected actors, the
+ * diameter, the effective diameter and every actor's eccentricity
+ * Runs a bit-parallel multi-source BFS: 64 sources share one search, each actor keeps a long whose bit i says source i
+ * has reached it, and a single pass over an actor's neighbors pushes all 64 searches forward at once. Actors near the
+ * middle of the graph are reached by most sources at the same level, so the graph is scanned about once per 64 sources
+ * instead of once per source
+ * Batches of sources are spread across a ForkJoinPool with per-thread scratch, and the per-thread histograms are
+ * summed at the end. Sources can be sampled to bound the runtime (the histogram is then scaled up to estimate the
+ * exact one, and the diameter is only a lower bound)
+ */
+public class SeparationHistogram {
+    private static final Metrics.Op HISTOGRAM = Metrics.op("separation histogram");
+    private static final double EFFECTIVE_QUANTILE = 0.9;   //share of connected pairs within the effective diameter
+
+    private final CompactActorGraph graph;  //graph to measure
+    private final int parallelism;          //number of worker threads
+    private long[] histogram;       //separation -> (source, actor) pairs that far apart, counted from the sources
+    private int[] eccentricity;     //actor -> separation of the farthest actor connected to it (-1 if it wasn't a source)
+    private int numSources;         //sources the last compute ran from
+    private boolean sampled;        //whether the histogram is an estimate from a sample of sources
+
+    /**
+     * Per-thread scratch for the multi-source search
+     */
+    private static class Scratch {
+        final long[] seen;          //actor -> sources that have reached it
+        final long[] visit;         //actor -> sources whose frontier it's on
+        final long[] next;          //actor -> sources that reached it in the level being expanded
+        int[] frontier, nextFrontier;   //actors with a non-zero visit (next) word
+        long[] histogram = new long[64];    //this thread's running counts
+        long visited;               //(source, actor) pairs reached by this thread's batches
+
+        Scratch(int n){
+            seen = new long[n];
+            visit = new long[n];
+            next = new long[n];
+            frontier = new int[n];
+            nextFrontier = new int[n];
+        }
+    }
+
+    /**
+     * Construct an engine that uses every core
+     * @param graph CSR graph to measure
+     */
+    public SeparationHistogram(CompactActorGraph graph){
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct an engine with a set number of worker threads
+     * @param graph         CSR graph to measure
+     * @param parallelism   Number of worker threads
+     */
+    public SeparationHistogram(CompactActorGraph graph, int parallelism){
+        this.graph = graph;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Measure the separations from every actor, or from a sample of them
+     * @param samples   Number of random sources to use, or 0 (or anything >= the number of actors) for the exact histogram
+     * @param seed      Seed for picking the sampled sources
+     * @param progress  Called from the worker threads with the number of sources finished (roughly every 1%), or null
+     */
+    public void compute(int samples, long seed, IntConsumer progress){
+        long start = Metrics.start(), allocated = Metrics.allocated();
+        int n = graph.numVertices();
+        int[] sources;
+        sampled = samples > 0 && samples < n;
+        if(sampled){
+            //partial Fisher-Yates shuffle to pick distinct sources
+            int[] all = new int[n];
+            for(int v = 0; v < n; v++) all[v] = v;
+            Random random = new Random(seed);
+            for(int i = 0; i < samples; i++){
+                int j = i + random.nextInt(n - i);
+                int temp = all[i];
+                all[i] = all[j];
+                all[j] = temp;
+            }
+            sources = Arrays.copyOf(all, samples);
+        } else {
+            sources = new int[n];
+            for(int v = 0; v < n; v++) sources[v] = v;
+        }
+        numSources = sources.length;
+        eccentricity = new int[n];
+        Arrays.fill(eccentricity, -1);
+        //each worker thread gets its own scratch, and every scratch is kept so the histograms can be summed
+        ConcurrentLinkedQueue<Scratch> scratches = new ConcurrentLinkedQueue<>();
+        ThreadLocal<Scratch> local = ThreadLocal.withInitial(() -> {
+            Scratch scratch = new Scratch(n);
+            scratches.add(scratch);
+            return scratch;
+        });
+        AtomicInteger done = new AtomicInteger();
+        int step = Math.max(1, sources.length / 100);
+        int batches = (sources.length + 63) / 64;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new BatchTask(sources, 0, batches, local, done, step, progress));
+        } finally {
+            pool.shutdown();
+        }
+        histogram = new long[1];
+        long visited = 0;
+        for(Scratch scratch: scratches){
+            if(scratch.histogram.length > histogram.length) histogram = Arrays.copyOf(histogram, scratch.histogram.length);
+            for(int d = 0; d < scratch.histogram.length; d++) histogram[d] += scratch.histogram[d];
+            visited += scratch.visited;
+        }
+        //trim the empty separations off the end
+        int last = histogram.length - 1;
+        while(last > 0 && histogram[last] == 0) last--;
+        histogram = Arrays.copyOf(histogram, last + 1);
+        HISTOGRAM.record(start, allocated, visited);
+    }
+
+    /**
+     * Run one batch of up to 64 sources as a single bit-parallel BFS
+     * @param sources   Source actors
+     * @param from      First source of the batch
+     * @param to        Just past the last source of the batch
+     * @param scratch   This thread's scratch
+     */
+    private void searchBatch(int[] sources, int from, int to, Scratch scratch){
+        long[] seen = scratch.seen, visit = scratch.visit, next = scratch.next;
+        Arrays.fill(seen, 0);
+        int[] frontier = scratch.frontier, nextFrontier = scratch.nextFrontier;
+        int frontierSize = 0;
+        for(int i = from; i < to; i++){
+            long bit = 1L << (i - from);
+            int s = sources[i];
+            seen[s] = bit;
+            visit[s] = bit;
+            frontier[frontierSize++] = s;
+            eccentricity[s] = 0;
+        }
+        int[] offsets = graph.offsets(), neighbors = graph.neighbors();
+        int[] extraHead = graph.extraHead(), extraNeighbors = graph.extraNeighbors(), extraNext = graph.extraNext();
+        for(int level = 1; frontierSize > 0; level++){
+            int nextSize = 0;
+            for(int i = 0; i < frontierSize; i++){
+                int v = frontier[i];
+                long bits = visit[v];
+                visit[v] = 0;
+                for(int slot = offsets[v], link = extraHead[v]; slot < offsets[v + 1] || link != -1; ){
+                    int w;
+                    if(slot < offsets[v + 1]) w = neighbors[slot++];
+                    else {
+                        w = extraNeighbors[link];
+                        link = extraNext[link];
+                    }
+                    //sources that reach w for the first time, all at this level
+                    long reached = bits & ~seen[w];
+                    if(reached != 0){
+                        if(next[w] == 0) nextFrontier[nextSize++] = w;
+                        next[w] |= reached;
+                        seen[w] |= reached;
+                    }
+                }
+            }
+            //count the new pairs and note which sources are still finding actors at this level
+            long count = 0, active = 0;
+            for(int i = 0; i < nextSize; i++){
+                int w = nextFrontier[i];
+                long bits = next[w];
+                next[w] = 0;
+                visit[w] = bits;
+                count += Long.bitCount(bits);
+                active |= bits;
+            }
+            if(count > 0){
+                if(level >= scratch.histogram.length) scratch.histogram = Arrays.copyOf(scratch.histogram, 2 * level);
+                scratch.histogram[level] += count;
+                scratch.visited += count;
+                for(long bits = active; bits != 0; bits &= bits - 1) eccentricity[sources[from + Long.numberOfTrailingZeros(bits)]] = level;
+            }
+            int[] temp = frontier;
+            frontier = nextFrontier;
+            nextFrontier = temp;
+            frontierSize = nextSize;
+        }
+        scratch.frontier = frontier;
+        scratch.nextFrontier = nextFrontier;
+    }
+
+    //getters for the results of the last compute
+    public boolean isSampled() { return sampled; }
+    public int getNumSources() { return numSources; }
+    public int[] getEccentricity() { return eccentricity; }
+    public int eccentricity(int v) { return eccentricity[v]; }
+
+    /**
+     * Largest separation found: the exact diameter (of the biggest component) when every actor was a source, and a
+     * lower bound on it when the sources were sampled
+     * @return  The largest separation between any two connected actors
+     */
+    public int diameter() { return histogram.length - 1; }
+
+    /**
+     * Number of unordered pairs of actors at a separation (estimated from the sample when sampled)
+     * @param d Separation
+     * @return  Pairs that far apart
+     */
+    public double pairsAt(int d){
+        if(d < 1 || d >= histogram.length) return 0;
+        //every pair is counted once from each end, and sampled sources stand in for all of them
+        return histogram[d] * 0.5 * graph.numVertices() / numSources;
+    }
+
+    /**
+     * Number of unordered pairs of connected actors
+     * @return  Connected pairs (estimated when sampled)
+     */
+    public double connectedPairs(){
+        double pairs = 0;
+        for(int d = 1; d < histogram.length; d++) pairs += pairsAt(d);
+        return pairs;
+    }
+
+    /**
+     * Average separation over every pair of connected actors
+     * @return  The mean separation, or 0 if no actors are connected
+     */
+    public double averageSeparation(){
+        long pairs = 0, total = 0;
+        for(int d = 1; d < histogram.length; d++){
+            pairs += histogram[d];
+            total += d * histogram[d];
+        }
+        return pairs == 0 ? 0 : (double) total / pairs;
+    }
+
+    /**
+     * Effective diameter: the separation within which 90% of connected pairs lie, interpolated between whole
+     * separations
+     * @return  The effective diameter, or 0 if no actors are connected
+     */
+    public double effectiveDiameter(){
+        long pairs = 0;
+        for(int d = 1; d < histogram.length; d++) pairs += histogram[d];
+        if(pairs == 0) return 0;
+        double target = EFFECTIVE_QUANTILE * pairs;
+        long cumulative = 0;
+        for(int d = 1; d < histogram.length; d++){
+            if(cumulative + histogram[d] >= target){
+                //the pairs at separation d are spread evenly over (d-1, d]
+                return d - 1 + (target - cumulative) / histogram[d];
+            }
+            cumulative += histogram[d];
+        }
+        return diameter();
+    }
+
+    /**
+     * Fork/join task over a range of 64-source batches that splits in half until it's a single batch
+     */
+    @SuppressWarnings("serial")
+    private class BatchTask extends RecursiveAction {
+        private final int[] sources;
+        private final int lo, hi;   //batches lo ... hi-1
+        private final ThreadLocal<Scratch> local;
+        private final AtomicInteger done;
+        private final int step;
+        private final IntConsumer progress;
+
+        BatchTask(int[] sources, int lo, int hi, ThreadLocal<Scratch> local, AtomicInteger done, int step, IntConsumer progress){
+            this.sources = sources;
+            this.lo = lo;
+            this.hi = hi;
+            this.local = local;
+            this.done = done;
+            this.step = step;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > 1){
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new BatchTask(sources, lo, mid, local, done, step, progress), new BatchTask(sources, mid, hi, local, done, step, progress));
+                return;
+            }
+            if(hi <= lo) return;
+            int from = 64 * lo, to = Math.min(sources.length, from + 64);
+            searchBatch(sources, from, to, local.get());
+            int before = done.getAndAdd(to - from);
+            //report whenever the count passes a multiple of step
+            if(progress != null && (before + to - from) / step != before / step) progress.accept(before + to - from);
+        }
+    }
+}
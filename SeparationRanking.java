@@ -0,0 +1,145 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Ranks every actor as a center of the universe by average separation (what the 'c' command lists)
+ * Spreads the one-BFS-per-source work across a ForkJoinPool, where every worker thread keeps its own BFSEngine
+ * so the scratch arrays are allocated once per thread instead of once per source
+ */
+public class SeparationRanking {
+    private static final int GRAIN = 64;    //sources per leaf task, small enough to keep every worker busy to the end
+
+    private final CompactActorGraph graph;  //graph to rank
+    private final int parallelism;          //number of worker threads
+    private double[] averageSeparation;     //actor -> average separation when it's the center (filled in by run)
+    private int[] reachable;                //actor -> number of actors connected to it, itself included
+    private int[] eccentricity;             //actor -> separation of the farthest actor connected to it
+
+    /**
+     * Construct a ranking that uses every core
+     * @param graph CSR graph to rank
+     */
+    public SeparationRanking(CompactActorGraph graph){
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct a ranking with a set number of worker threads
+     * @param graph         CSR graph to rank
+     * @param parallelism   Number of worker threads (1 runs every BFS one after another)
+     */
+    public SeparationRanking(CompactActorGraph graph, int parallelism){
+        this.graph = graph;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Run a BFS from every actor in parallel and rank them by average separation
+     * @param progress  Called from the worker threads with the number of sources finished so far (roughly every 1%),
+     *                  or null for no progress
+     * @return          CompareNames for every actor with a non-zero average separation, in non-decreasing order
+     */
+    public List<CompareNames<String>> rank(IntConsumer progress){
+        run(progress);
+        //create a list of CompareNames objects for every ranked name(vertex) in order
+        List<CompareNames<String>> separations = new ArrayList<>();
+        for(int v: rankedOrder()){
+            separations.add(new CompareNames<>(graph.nameOf(v), averageSeparation[v]));
+        }
+        return separations;
+    }
+
+    /**
+     * Run a BFS from every actor in parallel, filling in the per-actor average separation, reachable count and eccentricity
+     * @param progress  Called from the worker threads with the number of sources finished so far (roughly every 1%),
+     *                  or null for no progress
+     */
+    public void run(IntConsumer progress){
+        int n = graph.numVertices();
+        averageSeparation = new double[n];
+        reachable = new int[n];
+        eccentricity = new int[n];
+        AtomicInteger done = new AtomicInteger();
+        int step = Math.max(1, n / 100);
+        //each worker thread lazily gets its own engine the first time it runs a leaf task
+        ThreadLocal<BFSEngine> engines = ThreadLocal.withInitial(() -> new BFSEngine(graph));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try{
+            pool.invoke(new RankTask(0, n, engines, done, step, progress));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Actors with a non-zero average separation, sorted by it (ties keep id order)
+     * @return  Dense actor ids in non-decreasing average separation order
+     */
+    public int[] rankedOrder(){
+        return rankedOrder(averageSeparation.length);
+    }
+
+    /**
+     * The most central actors (smallest non-zero average separation), picked with a bounded heap so the rest are never
+     * sorted; rankedOrder is the same with k covering everyone
+     * @param k Number of actors wanted
+     * @return  Up to k dense actor ids in non-decreasing average separation order (ties keep id order)
+     */
+    public int[] rankedOrder(int k){
+        int n = averageSeparation.length;
+        TopK top = new TopK(Math.min(k, n), false);
+        for(int v = 0; v < n; v++){
+            if(averageSeparation[v] > 0) top.offer(v, averageSeparation[v]);
+        }
+        return top.drain();
+    }
+
+    //getters for the per-actor results of the last run
+    public double[] getAverageSeparation() { return averageSeparation; }
+    public int[] getReachable() { return reachable; }
+    public int[] getEccentricity() { return eccentricity; }
+
+    /**
+     * Fork/join task over a range of source actors that splits in half until the range is GRAIN or smaller
+     */
+    @SuppressWarnings("serial")
+    private class RankTask extends RecursiveAction {
+        private final int lo, hi;   //sources lo ... hi-1
+        private final ThreadLocal<BFSEngine> engines;
+        private final AtomicInteger done;
+        private final int step;
+        private final IntConsumer progress;
+
+        RankTask(int lo, int hi, ThreadLocal<BFSEngine> engines, AtomicInteger done, int step, IntConsumer progress){
+            this.lo = lo;
+            this.hi = hi;
+            this.engines = engines;
+            this.done = done;
+            this.step = step;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if(hi - lo > GRAIN){
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RankTask(lo, mid, engines, done, step, progress), new RankTask(mid, hi, engines, done, step, progress));
+                return;
+            }
+            BFSEngine bfs = engines.get();
+            for(int v = lo; v < hi; v++){
+                BFSResult result = bfs.run(v);
+                TreeMetrics metrics = new TreeMetrics(result);
+                averageSeparation[v] = metrics.averageSeparation();
+                reachable[v] = result.getCount();
+                eccentricity[v] = metrics.getMaxDepth();
+                //report whenever the shared counter crosses another step
+                int finished = done.incrementAndGet();
+                if(progress != null && finished % step == 0) progress.accept(finished);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of made-up actors, movies and credits with the heavy tails of the real data: most movies have a small
+ * cast and a few have a huge one, and a few actors turn up in a great many movies while most turn up in one or two
+ * Every actor gets a Pareto-distributed career of at least one credit, and each credit goes to a movie picked in
+ * proportion to its Pareto-distributed cast size
+ * Everything is streamed to a Sink as it's made, so the same generator can fill in-memory arrays for benchmarks or
+ * write input files of any size without holding the credits in memory
+ * Actor 0 is always "Kevin Bacon", and gets the longest career drawn, so the game's default center exists and is central
+ */
+public class SyntheticCredits {
+    private static final int MIN_CAST = 2;          //smallest cast before the tail
+    private static final int MAX_CAST = 250;        //cap on the biggest casts, so one movie can't dominate the edges
+    private static final double CAST_ALPHA = 1.8;   //Pareto exponent of cast sizes (smaller is heavier tailed)
+    private static final int MAX_CAREER = 1000;     //cap on the longest careers
+    private static final double CAREER_ALPHA = 2.0; //Pareto exponent of credits per actor (mean about 1.6 at 2.0)
+
+    private final int numActors;
+    private final int numMovies;
+    private final long seed;
+
+    /**
+     * Receives everything the generator makes, in order: every actor, then every movie, then every credit
+     */
+    public interface Sink {
+        void actor(int id, String name);
+        void movie(int id, String name);
+        void credit(int movie, int actor);
+    }
+
+    /**
+     * Construct a generator
+     * @param numActors Number of actors to make
+     * @param numMovies Number of movies to make
+     * @param seed      Seed, so the same arguments always give the same data
+     */
+    public SyntheticCredits(int numActors, int numMovies, long seed){
+        this.numActors = numActors;
+        this.numMovies = numMovies;
+        this.seed = seed;
+    }
+
+    /**
+     * Generator with about as many movies per actor as the bacon/ files have
+     * @param numActors Number of actors to make
+     * @param seed      Seed for the data
+     * @return          Generator for that many actors
+     */
+    public static SyntheticCredits scaledTo(int numActors, long seed){
+        return new SyntheticCredits(numActors, Math.max(1, numActors * 2 / 5), seed);
+    }
+
+    //standard getters
+    public int getNumActors() { return numActors; }
+    public int getNumMovies() { return numMovies; }
+
+    /**
+     * Make all the data and stream it to a sink
+     * @param sink  Where to send it
+     * @return      Number of credits made
+     */
+    public long generate(Sink sink){
+        Random random = new Random(seed);
+        sink.actor(0, "Kevin Bacon");
+        for(int a = 1; a < numActors; a++) sink.actor(a, "Actor " + a);
+        for(int m = 0; m < numMovies; m++) sink.movie(m, "Movie " + m + " (" + (1900 + m % 120) + ")");
+        //running total of the movies' Pareto-distributed cast sizes, so a credit lands in a movie in proportion to its size
+        double[] castTotals = new double[numMovies];
+        double total = 0;
+        for(int m = 0; m < numMovies; m++){
+            total += Math.min(MAX_CAST, MIN_CAST / Math.pow(1 - random.nextDouble(), 1 / CAST_ALPHA));
+            castTotals[m] = total;
+        }
+        long credits = 0;
+        int longest = 1;
+        for(int a = 1; a < numActors; a++){
+            int career = career(random);
+            longest = Math.max(longest, career);
+            credits += credit(a, career, castTotals, random, sink);
+        }
+        //Kevin Bacon goes last, once the longest career is known
+        return credits + credit(0, longest, castTotals, random, sink);
+    }
+
+    /**
+     * Draw an actor's number of credits: Pareto-distributed, rounded down, so half the actors have one credit and a
+     * few have hundreds
+     * @param random    Random source
+     * @return          Number of credits, from 1 to MAX_CAREER
+     */
+    private static int career(Random random){
+        return (int) Math.min(MAX_CAREER, 1 / Math.pow(1 - random.nextDouble(), 1 / CAREER_ALPHA));
+    }
+
+    /**
+     * Send an actor's credits to the sink, each in a movie picked in proportion to its cast size
+     * @param actor         Id of the actor
+     * @param career        Number of credits to make
+     * @param castTotals    Running total of the movies' cast sizes
+     * @param random        Random source
+     * @param sink          Where to send the credits
+     * @return              Number of credits made
+     */
+    private static int credit(int actor, int career, double[] castTotals, Random random, Sink sink){
+        int numMovies = castTotals.length;
+        for(int i = 0; i < career; i++){
+            int movie = Arrays.binarySearch(castTotals, random.nextDouble() * castTotals[numMovies - 1]);
+            //not found gives -(insertion point) - 1, and the insertion point is the movie whose range holds the draw
+            sink.credit(Math.min(numMovies - 1, movie < 0 ? -movie - 1 : movie), actor);
+        }
+        return career;
+    }
+
+    /**
+     * Generate straight into a graph, the same way BaconLoader builds one from files
+     * @return  CSR graph of the generated data
+     */
+    public CompactActorGraph toGraph(){
+        NameDictionary actorNames = new NameDictionary();
+        NameDictionary movieNames = new NameDictionary();
+        IntList creditMovies = new IntList(), creditActors = new IntList();
+        generate(new Sink() {
+            //the generated names are all distinct, so the dictionary ids line up with the generated ids
+            @Override
+            public void actor(int id, String name) { actorNames.add(name); }
+            @Override
+            public void movie(int id, String name) { movieNames.add(name); }
+            @Override
+            public void credit(int movie, int actor) {
+                creditMovies.add(movie);
+                creditActors.add(actor);
+            }
+        });
+        actorNames.trim();
+        movieNames.trim();
+        return CompactActorGraph.fromCredits(actorNames, movieNames, creditMovies.array(), creditActors.array(), creditMovies.size());
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Streaming top-k selection over primitive (id, metric) pairs: a bounded binary heap that keeps the k best ids seen
+ * so far, so picking k out of n costs O(n log k) and never boxes anything or sorts the ones that don't make the cut
+ * The heap's root is the worst of the k kept, so a new pair only has to beat that one to get in
+ * Ties on the metric go to the smaller id, which gives the same order as a stable sort of the ids
+ */
+public class TopK {
+    private final int k;                //most ids kept
+    private final boolean largest;      //keep the largest metrics (true) or the smallest (false)
+    private final int[] ids;            //heap of kept ids, worst at the root
+    private final double[] metrics;     //metric of each heap entry
+    private int size;                   //entries in the heap
+
+    /**
+     * Construct an empty selection
+     * @param k         Number of ids to keep
+     * @param largest   true to keep the ids with the largest metrics, false for the smallest
+     */
+    public TopK(int k, boolean largest){
+        this.k = Math.max(0, k);
+        this.largest = largest;
+        ids = new int[this.k];
+        metrics = new double[this.k];
+    }
+
+    /**
+     * Pick the k ids with the largest or smallest values out of a whole array
+     * @param values    Metric of every id
+     * @param k         Number of ids wanted
+     * @param largest   true for the largest values, false for the smallest
+     * @return          Up to k ids, best first
+     */
+    public static int[] select(double[] values, int k, boolean largest){
+        TopK top = new TopK(Math.min(k, values.length), largest);
+        for(int v = 0; v < values.length; v++) top.offer(v, values[v]);
+        return top.drain();
+    }
+
+    /**
+     * Whether one pair ranks ahead of another
+     * @param a     Id of the first pair
+     * @param ma    Metric of the first pair
+     * @param b     Id of the second pair
+     * @param mb    Metric of the second pair
+     * @return      true if (a, ma) is better than (b, mb)
+     */
+    private boolean better(int a, double ma, int b, double mb){
+        int c = Double.compare(ma, mb);
+        if(c != 0) return largest ? c > 0 : c < 0;
+        return a < b;
+    }
+
+    /**
+     * Offer a pair, keeping it if it's among the k best so far
+     * @param id        Id (e.g. dense actor id)
+     * @param metric    Its metric
+     */
+    public void offer(int id, double metric){
+        if(size < k){
+            //sift the new entry up from the bottom
+            int i = size++;
+            while(i > 0){
+                int parent = (i - 1) >>> 1;
+                if(!better(ids[parent], metrics[parent], id, metric)) break;
+                ids[i] = ids[parent];
+                metrics[i] = metrics[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            metrics[i] = metric;
+        } else if(k > 0 && better(id, metric, ids[0], metrics[0])){
+            siftDown(id, metric, size);
+        }
+    }
+
+    /**
+     * Put a pair in place of the root and sift it down to where it belongs
+     * @param id        Id to place
+     * @param metric    Its metric
+     * @param n         Entries in the heap
+     */
+    private void siftDown(int id, double metric, int n){
+        int i = 0;
+        while(true){
+            int child = 2 * i + 1;
+            if(child >= n) break;
+            //move towards the worse child, since the worst entry belongs at the root
+            if(child + 1 < n && better(ids[child], metrics[child], ids[child + 1], metrics[child + 1])) child++;
+            if(!better(id, metric, ids[child], metrics[child])) break;
+            ids[i] = ids[child];
+            metrics[i] = metrics[child];
+            i = child;
+        }
+        ids[i] = id;
+        metrics[i] = metric;
+    }
+
+    public int size() { return size; }
+
+    /**
+     * Empty the heap into an array, best first (each pop takes the worst entry off the root and fills from the back)
+     * @return  The kept ids, best first
+     */
+    public int[] drain(){
+        int[] order = new int[size];
+        for(int n = size; n > 0; n--){
+            order[n - 1] = ids[0];
+            siftDown(ids[n - 1], metrics[n - 1], n - 1);
+        }
+        size = 0;
+        return order;
+    }
+}
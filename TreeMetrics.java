@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Separation metrics of one BFS result, from a single level-order pass over its visit order (no recursion)
+ * BFS visits actors level by level, so the visit order is already bucketed by depth: the actors at separation d are
+ * order[levelStart[d]] ... order[levelStart[d+1]-1], and a separation range is just a slice of the order
+ */
+public class TreeMetrics {
+    private final BFSResult result;     //BFS the metrics describe (only valid until its engine runs again)
+    private final long totalSeparation; //sum of every reached actor's separation from the source
+    private final int maxDepth;         //separation of the farthest reached actor (the source's eccentricity)
+    private final int[] levelStart;     //depth -> index in the visit order of the first actor at that depth
+
+    /**
+     * Compute the metrics of a BFS result
+     * @param result    BFS result to measure
+     */
+    public TreeMetrics(BFSResult result){
+        this.result = result;
+        int[] order = result.getOrder();
+        int[] depth = result.getDepth();
+        int count = result.getCount();
+        maxDepth = count == 0 ? -1 : depth[order[count - 1]];
+        levelStart = new int[maxDepth + 2];
+        long total = 0;
+        int level = 0;
+        for(int i = 0; i < count; i++){
+            int d = depth[order[i]];
+            total += d;
+            //mark where each new level starts
+            while(level < d) levelStart[++level] = i;
+        }
+        levelStart[maxDepth + 1] = count;
+        totalSeparation = total;
+    }
+
+    //standard getters
+    public long getTotalSeparation() { return totalSeparation; }
+    public int getMaxDepth() { return maxDepth; }
+    public int depth(int v) { return result.getDepth()[v]; }
+
+    /**
+     * Average separation of the reached actors from the source (not counting the source itself)
+     * @return  Average separation, or 0 if only the source was reached
+     */
+    public double averageSeparation(){
+        //if there's only one node reached, let's say for arguments sake that it has 0 separation
+        if(result.getCount() - 1 <= 0) return 0;
+        return (double) totalSeparation / (result.getCount() - 1);
+    }
+
+    /**
+     * Number of actors at a given separation (one bar of the depth histogram)
+     * @param d Separation from the source
+     * @return  Number of reached actors exactly d away
+     */
+    public int countAt(int d){
+        if(d < 0 || d > maxDepth) return 0;
+        return levelStart[d + 1] - levelStart[d];
+    }
+
+    /**
+     * Depth histogram of the whole BFS
+     * @return  Array where entry d is the number of actors exactly d away from the source
+     */
+    public int[] histogram(){
+        int[] histogram = new int[maxDepth + 1];
+        for(int d = 0; d <= maxDepth; d++) histogram[d] = countAt(d);
+        return histogram;
+    }
+
+    /**
+     * Start of a separation range in the visit order
+     * @param low   Smallest separation wanted
+     * @return      Index in the visit order of the first actor at least low away
+     */
+    public int rangeStart(int low){
+        return levelStart[Math.max(0, Math.min(low, maxDepth + 1))];
+    }
+
+    /**
+     * End of a separation range in the visit order
+     * @param high  Largest separation wanted
+     * @return      Index in the visit order just past the last actor at most high away
+     */
+    public int rangeEnd(int high){
+        if(high < 0) return 0;
+        return levelStart[Math.min(high, maxDepth) + 1];
+    }
+
+    /**
+     * Actors with separation between low and high, read straight from the depth buckets
+     * @param graph CSR graph the BFS ran on (for the names)
+     * @param low   Smallest separation wanted
+     * @param high  Largest separation wanted
+     * @return      CompareNames of the actors in range, in non-decreasing separation order
+     */
+    public List<CompareNames<String>> separationsBetween(CompactActorGraph graph, int low, int high){
+        int start = rangeStart(low), end = rangeEnd(high);
+        List<CompareNames<String>> list = new ArrayList<>(Math.max(0, end - start));
+        int[] order = result.getOrder();
+        for(int i = start; i < end; i++){
+            list.add(new CompareNames<>(graph.nameOf(order[i]), result.getDepth()[order[i]]));
+        }
+        return list;
+    }
+}